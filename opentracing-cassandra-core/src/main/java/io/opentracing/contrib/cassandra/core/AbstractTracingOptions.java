@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning options common to the driver modules, each driver module extends them with its own.
+ */
+public abstract class AbstractTracingOptions {
+
+  private final RecordingDetector recordingDetector;
+  private final double querySpanRate;
+  private final double globalSpanRate;
+  private final Set<String> untracedQueries;
+  private final boolean latencyHistograms;
+  private final int maxHistograms;
+  private final boolean metricsOnly;
+  private final boolean statementFingerprints;
+  private final int fingerprintCacheSize;
+  private final int maxStatementLength;
+  private final long statementDictionaryWindowNanos;
+
+  /**
+   * @param <B> type of the builder of the driver module, returned by the methods for chaining
+   */
+  public abstract static class Builder<B extends Builder<B>> {
+
+    private RecordingDetector recordingDetector = RecordingDetector.DEFAULT;
+    private double querySpanRate;
+    private double globalSpanRate;
+    private Set<String> untracedQueries = Collections.emptySet();
+    private boolean latencyHistograms;
+    private int maxHistograms = 1024;
+    private boolean metricsOnly;
+    private boolean statementFingerprints;
+    private int fingerprintCacheSize = 1024;
+    private int maxStatementLength = Integer.MAX_VALUE;
+    private long statementDictionaryWindowNanos;
+
+    protected abstract B self();
+
+    // Defaults to RecordingDetector.DEFAULT, detecting no-op tracers
+    public B withRecordingDetector(RecordingDetector recordingDetector) {
+      if (recordingDetector == null) {
+        throw new NullPointerException("recordingDetector");
+      }
+      this.recordingDetector = recordingDetector;
+      return self();
+    }
+
+    /**
+     * Limits the spans created for the same prepared statement, or the same query up to its literal
+     * values, queries over their limit are executed without a span. Unlimited by default.
+     */
+    public B withQuerySpanRateLimit(double spansPerSecond) {
+      if (spansPerSecond <= 0) {
+        throw new IllegalArgumentException("spansPerSecond must be positive");
+      }
+      this.querySpanRate = spansPerSecond;
+      return self();
+    }
+
+    /**
+     * Limits the spans created for all queries, queries over the limit are executed without a span.
+     * Unlimited by default.
+     */
+    public B withGlobalSpanRateLimit(double spansPerSecond) {
+      if (spansPerSecond <= 0) {
+        throw new IllegalArgumentException("spansPerSecond must be positive");
+      }
+      this.globalSpanRate = spansPerSecond;
+      return self();
+    }
+
+    // Queries that are never traced, e.g. heartbeats
+    public B withUntracedQueries(String... queries) {
+      this.untracedQueries = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(queries)));
+      return self();
+    }
+
+    /**
+     * Records the latency of every successful query in a histogram keyed by span name, table and
+     * coordinator, see {@link LatencyHistograms}. Disabled by default.
+     */
+    public B withLatencyHistograms(boolean latencyHistograms) {
+      this.latencyHistograms = latencyHistograms;
+      return self();
+    }
+
+    /**
+     * Limits the histograms of a session, values of keys beyond the limit are recorded together
+     * under {@link Histograms#OTHER}. A histogram takes about 2.5 KB, 1024 by default.
+     */
+    public B withMaxHistograms(int maxHistograms) {
+      if (maxHistograms < 0) {
+        throw new IllegalArgumentException("maxHistograms must not be negative");
+      }
+      this.maxHistograms = maxHistograms;
+      return self();
+    }
+
+    /**
+     * Only records latency histograms, no span is created. Disabled by default.
+     */
+    public B withMetricsOnly(boolean metricsOnly) {
+      this.metricsOnly = metricsOnly;
+      return self();
+    }
+
+    /**
+     * Tags spans with the statement normalized by
+     * {@link io.opentracing.contrib.cassandra.nameprovider.CqlFingerprint}, literals replaced by
+     * {@code ?}, instead of the query string, and with the id of the fingerprint. Disabled by
+     * default.
+     */
+    public B withStatementFingerprints(boolean statementFingerprints) {
+      this.statementFingerprints = statementFingerprints;
+      return self();
+    }
+
+    /**
+     * Limits the fingerprints of queries cached by a session, used by the statement fingerprints,
+     * the statement dictionary and the span rate limits. Beyond the limit, arbitrary fingerprints
+     * are evicted. 1024 by default, 0 disables the cache.
+     */
+    public B withFingerprintCacheSize(int fingerprintCacheSize) {
+      if (fingerprintCacheSize < 0) {
+        throw new IllegalArgumentException("fingerprintCacheSize must not be negative");
+      }
+      this.fingerprintCacheSize = fingerprintCacheSize;
+      return self();
+    }
+
+    /**
+     * Truncates the statements of the {@code db.statement} tag, keeping their head and tail.
+     * Unlimited by default.
+     */
+    public B withMaxStatementLength(int maxStatementLength) {
+      if (maxStatementLength < 0) {
+        throw new IllegalArgumentException("maxStatementLength must not be negative");
+      }
+      this.maxStatementLength = maxStatementLength;
+      return self();
+    }
+
+    /**
+     * Tags spans with the id of their statement, the prepared id or else the id of its {@link
+     * io.opentracing.contrib.cassandra.nameprovider.CqlFingerprint}, and only tags the first span
+     * of a statement in every window with the {@code db.statement} text. Disabled by default.
+     */
+    public B withStatementDictionary(long window, TimeUnit unit) {
+      if (window <= 0) {
+        throw new IllegalArgumentException("window must be positive");
+      }
+      this.statementDictionaryWindowNanos = unit.toNanos(window);
+      return self();
+    }
+  }
+
+  protected AbstractTracingOptions(Builder<?> builder) {
+    this.recordingDetector = builder.recordingDetector;
+    this.querySpanRate = builder.querySpanRate;
+    this.globalSpanRate = builder.globalSpanRate;
+    this.untracedQueries = builder.untracedQueries;
+    this.latencyHistograms = builder.latencyHistograms || builder.metricsOnly;
+    this.maxHistograms = builder.maxHistograms;
+    this.metricsOnly = builder.metricsOnly;
+    this.statementFingerprints = builder.statementFingerprints;
+    this.fingerprintCacheSize = builder.fingerprintCacheSize;
+    this.maxStatementLength = builder.maxStatementLength;
+    this.statementDictionaryWindowNanos = builder.statementDictionaryWindowNanos;
+  }
+
+  public RecordingDetector getRecordingDetector() {
+    return recordingDetector;
+  }
+
+  /**
+   * @return spans per second allowed for the same statement, 0 if unlimited
+   */
+  public double getQuerySpanRate() {
+    return querySpanRate;
+  }
+
+  /**
+   * @return spans per second allowed for all queries, 0 if unlimited
+   */
+  public double getGlobalSpanRate() {
+    return globalSpanRate;
+  }
+
+  public Set<String> getUntracedQueries() {
+    return untracedQueries;
+  }
+
+  public boolean isLatencyHistograms() {
+    return latencyHistograms;
+  }
+
+  public int getMaxHistograms() {
+    return maxHistograms;
+  }
+
+  public boolean isMetricsOnly() {
+    return metricsOnly;
+  }
+
+  public boolean isStatementFingerprints() {
+    return statementFingerprints;
+  }
+
+  public int getFingerprintCacheSize() {
+    return fingerprintCacheSize;
+  }
+
+  public int getMaxStatementLength() {
+    return maxStatementLength;
+  }
+
+  /**
+   * @return window in which a statement text is sent once, 0 if disabled
+   */
+  public long getStatementDictionaryWindowNanos() {
+    return statementDictionaryWindowNanos;
+  }
+}
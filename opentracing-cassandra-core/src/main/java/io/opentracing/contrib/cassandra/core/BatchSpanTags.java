@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import io.opentracing.tag.IntTag;
+import io.opentracing.tag.StringTag;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Tags of the spans of batches, set alike by both drivers.
+ *
+ * <p>Shared by the driver modules, not part of the public API.
+ */
+public final class BatchSpanTags {
+
+  public static final StringTag BATCH_TYPE = new StringTag("batch.type");
+  // number of statements
+  public static final IntTag BATCH_SIZE = new IntTag("batch.size");
+  // number of distinct tables
+  public static final IntTag BATCH_TABLES = new IntTag("batch.tables");
+  // distinct tables as keyspace.table, sorted and separated by commas
+  public static final StringTag BATCH_TABLE_NAMES = new StringTag("batch.table_names");
+
+  private BatchSpanTags() {
+  }
+
+  /**
+   * @param tables distinct tables as {@code keyspace.table}
+   * @return value of {@link #BATCH_TABLE_NAMES}
+   */
+  public static String tableNames(Collection<String> tables) {
+    return String.join(",", new TreeSet<>(tables));
+  }
+}
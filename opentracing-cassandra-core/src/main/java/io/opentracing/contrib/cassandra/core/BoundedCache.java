@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Concurrent cache bounded by number of entries. When the bound is exceeded arbitrary entries are
+ * evicted until the cache fits again, like in {@link
+ * io.opentracing.contrib.cassandra.nameprovider.CachingQuerySpanNameProvider}. Values are computed
+ * outside of any lock and may be computed more than once for the same key.
+ *
+ * <p>Shared by the driver modules, not part of the public API.
+ */
+public final class BoundedCache<K, V> {
+
+  private final ConcurrentHashMap<K, V> cache = new ConcurrentHashMap<>();
+  private final int maximumSize;
+
+  public BoundedCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  public V get(K key, Function<? super K, ? extends V> loader) {
+    V value = cache.get(key);
+    if (value != null) {
+      return value;
+    }
+    value = loader.apply(key);
+    V existing = cache.putIfAbsent(key, value);
+    if (existing != null) {
+      return existing;
+    }
+    evictIfNeeded();
+    return value;
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  private void evictIfNeeded() {
+    Iterator<K> keys = cache.keySet().iterator();
+    while (cache.size() > maximumSize && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+    }
+  }
+}
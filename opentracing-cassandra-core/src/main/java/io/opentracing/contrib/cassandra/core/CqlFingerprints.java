@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import io.opentracing.contrib.cassandra.nameprovider.CqlFingerprint;
+
+/**
+ * Fingerprints of the queries of a session, cached by query in a {@link BoundedCache} so a query
+ * repeated verbatim is only normalized once. Shared by the statement tags and the span rate limiter
+ * of the session.
+ *
+ * <p>Shared by the driver modules, not part of the public API.
+ */
+public final class CqlFingerprints {
+
+  // longer queries, e.g. batches of literals, are unlikely to repeat
+  static final int MAXIMUM_CACHED_QUERY_LENGTH = 4096;
+
+  private final BoundedCache<String, CqlFingerprint> cache;
+
+  /**
+   * @param maximumSize maximum number of cached fingerprints, 0 to cache none
+   */
+  public CqlFingerprints(int maximumSize) {
+    this.cache = new BoundedCache<>(maximumSize);
+  }
+
+  /**
+   * @param query CQL query, may be null
+   * @return fingerprint of the query, of the empty statement for null
+   */
+  public CqlFingerprint of(String query) {
+    if (query == null || query.length() > MAXIMUM_CACHED_QUERY_LENGTH) {
+      return CqlFingerprint.of(query);
+    }
+    return cache.get(query, CqlFingerprint::of);
+  }
+
+  int size() {
+    return cache.size();
+  }
+}
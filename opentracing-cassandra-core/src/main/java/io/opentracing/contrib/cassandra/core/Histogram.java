@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free histogram of non-negative values with a bounded relative error. Every power of two is
+ * split into 8 buckets, so a value is known within 12.5%. Values are counted up to {@link
+ * #MAX_VALUE}, about 36 minutes in nanoseconds or 2 TB in bytes, higher values are counted as
+ * {@code MAX_VALUE}. Recording a value is two atomic increments. Like a {@code LongAdder}, counts
+ * are only striped by thread once recording contends, so histograms recorded from a single thread
+ * at a time take about 2.5 KB.
+ */
+public final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) << SUB_BUCKET_BITS;
+  // the slot after the buckets holds the sum of the values
+  private static final int SUM = BUCKETS;
+  private static final int MAX_STRIPES = 8;
+  private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+  private final AtomicLongArray base = new AtomicLongArray(BUCKETS + 1);
+  // created on the first contended increment, every stripe on its first use
+  private volatile AtomicReferenceArray<AtomicLongArray> stripes;
+  private Snapshot intervalStart = new Snapshot(new long[BUCKETS], 0);
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    } else if (value > MAX_VALUE) {
+      value = MAX_VALUE;
+    }
+    int bucket = bucket(value);
+    AtomicLongArray counts = base;
+    if (STRIPES > 1) {
+      AtomicReferenceArray<AtomicLongArray> stripes = this.stripes;
+      if (stripes == null) {
+        long count = base.get(bucket);
+        if (base.compareAndSet(bucket, count, count + 1)) {
+          base.addAndGet(SUM, value);
+          return;
+        }
+        stripes = stripes();
+      }
+      counts = stripe(stripes);
+    }
+    counts.incrementAndGet(bucket);
+    counts.addAndGet(SUM, value);
+  }
+
+  /**
+   * @return values recorded since the histogram was created
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    long sum = add(base, counts);
+    AtomicReferenceArray<AtomicLongArray> stripes = this.stripes;
+    if (stripes != null) {
+      for (int i = 0; i < stripes.length(); i++) {
+        AtomicLongArray stripe = stripes.get(i);
+        if (stripe != null) {
+          sum += add(stripe, counts);
+        }
+      }
+    }
+    return new Snapshot(counts, sum);
+  }
+
+  /**
+   * @return values recorded since the previous call, or since the histogram was created for the
+   * first call
+   */
+  public synchronized Snapshot intervalSnapshot() {
+    Snapshot snapshot = snapshot();
+    long[] counts = new long[BUCKETS];
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts[bucket] = snapshot.counts[bucket] - intervalStart.counts[bucket];
+    }
+    Snapshot interval = new Snapshot(counts, snapshot.sum - intervalStart.sum);
+    intervalStart = snapshot;
+    return interval;
+  }
+
+  public long getCount() {
+    return snapshot().getCount();
+  }
+
+  public double getMean() {
+    return snapshot().getMean();
+  }
+
+  /**
+   * @return highest recorded value, within the precision of the histogram
+   */
+  public long getMax() {
+    return snapshot().getMax();
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return value at the percentile, within the precision of the histogram
+   */
+  public long getValueAtPercentile(double percentile) {
+    return snapshot().getValueAtPercentile(percentile);
+  }
+
+  private static long add(AtomicLongArray stripe, long[] counts) {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts[bucket] += stripe.get(bucket);
+    }
+    return stripe.get(SUM);
+  }
+
+  private synchronized AtomicReferenceArray<AtomicLongArray> stripes() {
+    if (stripes == null) {
+      stripes = new AtomicReferenceArray<>(STRIPES);
+    }
+    return stripes;
+  }
+
+  private static AtomicLongArray stripe(AtomicReferenceArray<AtomicLongArray> stripes) {
+    int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+    AtomicLongArray stripe = stripes.get(index);
+    if (stripe == null) {
+      stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS + 1));
+      stripe = stripes.get(index);
+    }
+    return stripe;
+  }
+
+  /*
+    Values above MAX_VALUE are counted in the last bucket.
+   */
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    if (value > MAX_VALUE) {
+      value = MAX_VALUE;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  static long highestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+    int shift = exponent - SUB_BUCKET_BITS;
+    long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private static int stripes(int processors) {
+    int stripes = 1;
+    while (stripes < processors && stripes < MAX_STRIPES) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+
+  /**
+   * Immutable copy of the counts of a {@link Histogram}.
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    private Snapshot(long[] counts, long sum) {
+      long count = 0;
+      for (long bucketCount : counts) {
+        count += bucketCount;
+      }
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @return highest recorded value, within the precision of the histogram
+     */
+    public long getMax() {
+      for (int bucket = BUCKETS - 1; bucket >= 0; bucket--) {
+        if (counts[bucket] > 0) {
+          return highestValue(bucket);
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return value at the percentile, within the precision of the histogram
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        seen += counts[bucket];
+        if (seen >= rank) {
+          return highestValue(bucket);
+        }
+      }
+      return getMax();
+    }
+  }
+}
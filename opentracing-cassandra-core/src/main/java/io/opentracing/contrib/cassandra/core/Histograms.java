@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link Histogram}s keyed by name. The number of histograms is bounded, values for names beyond
+ * the bound are recorded in the {@link #OTHER} histogram.
+ */
+public final class Histograms {
+
+  public static final String OTHER = "other";
+
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private final int maximumSize;
+
+  public Histograms(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  public void record(String name, long value) {
+    get(name).record(value);
+  }
+
+  private Histogram get(String name) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      if (histograms.size() >= maximumSize) {
+        name = OTHER;
+      }
+      histogram = histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+    return histogram;
+  }
+
+  /**
+   * @return live view of the histograms by name
+   */
+  public Map<String, Histogram> asMap() {
+    return Collections.unmodifiableMap(histograms);
+  }
+}
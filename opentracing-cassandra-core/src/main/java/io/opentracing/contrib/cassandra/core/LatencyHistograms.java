@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency {@link Histogram}s keyed by span name, table and host. Recording the latency of a known
+ * key does not lock. The number of histograms is bounded, latencies of keys beyond the bound are
+ * recorded in the histogram of {@link #OTHER}.
+ */
+public final class LatencyHistograms {
+
+  public static final Key OTHER = new Key(Histograms.OTHER, "", "");
+
+  private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, Histogram>>>
+      histograms = new ConcurrentHashMap<>();
+  private final Histogram other = new Histogram();
+  private final AtomicInteger size = new AtomicInteger();
+  private final int maximumSize;
+
+  public LatencyHistograms(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * @param table table of the query, may be null
+   * @param host coordinator of the query, may be null
+   */
+  public void record(String spanName, String table, String host, long nanos) {
+    get(spanName, table == null ? "" : table, host == null ? "" : host).record(nanos);
+  }
+
+  private Histogram get(String spanName, String table, String host) {
+    ConcurrentMap<String, ConcurrentMap<String, Histogram>> byTable = histograms.get(spanName);
+    if (byTable != null) {
+      ConcurrentMap<String, Histogram> byHost = byTable.get(table);
+      if (byHost != null) {
+        Histogram histogram = byHost.get(host);
+        if (histogram != null) {
+          return histogram;
+        }
+      }
+    }
+    if (size.get() >= maximumSize) {
+      return other;
+    }
+    return histograms
+        .computeIfAbsent(spanName, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(table, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(host, key -> {
+          size.incrementAndGet();
+          return new Histogram();
+        });
+  }
+
+  /**
+   * @return histograms by key, including {@link #OTHER} once a key went beyond the bound
+   */
+  public Map<Key, Histogram> asMap() {
+    Map<Key, Histogram> map = new HashMap<>();
+    histograms.forEach((spanName, byTable) -> byTable.forEach((table, byHost) -> byHost
+        .forEach((host, histogram) -> map.put(new Key(spanName, table, host), histogram))));
+    if (other.getCount() > 0) {
+      map.put(OTHER, other);
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * @return latencies recorded since the previous call by key, keys without a latency in the
+   * interval are left out
+   * @see Histogram#intervalSnapshot()
+   */
+  public Map<Key, Histogram.Snapshot> intervalSnapshot() {
+    Map<Key, Histogram.Snapshot> map = new HashMap<>();
+    asMap().forEach((key, histogram) -> {
+      Histogram.Snapshot snapshot = histogram.intervalSnapshot();
+      if (snapshot.getCount() > 0) {
+        map.put(key, snapshot);
+      }
+    });
+    return Collections.unmodifiableMap(map);
+  }
+
+  public static final class Key {
+
+    private final String spanName;
+    private final String table;
+    private final String host;
+
+    public Key(String spanName, String table, String host) {
+      this.spanName = spanName;
+      this.table = table;
+      this.host = host;
+    }
+
+    public String getSpanName() {
+      return spanName;
+    }
+
+    /**
+     * @return table of the queries, empty if unknown
+     */
+    public String getTable() {
+      return table;
+    }
+
+    /**
+     * @return coordinator of the queries, empty if unknown
+     */
+    public String getHost() {
+      return host;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return spanName.equals(key.spanName) && table.equals(key.table) && host.equals(key.host);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(spanName, table, host);
+    }
+
+    @Override
+    public String toString() {
+      return spanName + " " + table + " " + host;
+    }
+  }
+}
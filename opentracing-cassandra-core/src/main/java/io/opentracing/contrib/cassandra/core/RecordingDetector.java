@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import io.opentracing.Tracer;
+import io.opentracing.noop.NoopTracer;
+import io.opentracing.util.GlobalTracer;
+
+/**
+ * Tells whether a span started now would be recorded. When it would not, queries are executed
+ * without a span, so no span name, tags nor error logs are computed.
+ *
+ * <p>The default detects a {@link NoopTracer} and an unregistered {@link GlobalTracer}. Tracers
+ * exposing the sampling decision can plug their own check, for example:
+ * <pre>{@code
+ * RecordingDetector detector = new RecordingDetector() {
+ *   public boolean isRecording(Tracer tracer) {
+ *     Span parent = tracer.activeSpan();
+ *     return parent == null || ((JaegerSpanContext) parent.context()).isSampled();
+ *   }
+ * };
+ * }</pre>
+ */
+public interface RecordingDetector {
+
+  RecordingDetector DEFAULT = new RecordingDetector() {
+    @Override
+    public boolean isRecording(Tracer tracer) {
+      if (tracer instanceof NoopTracer) {
+        return false;
+      }
+      return !(tracer instanceof GlobalTracer) || GlobalTracer.isRegistered();
+    }
+  };
+
+  /**
+   * @param tracer tracer the span would be started with
+   * @return false if the span would not be recorded
+   */
+  boolean isRecording(Tracer tracer);
+}
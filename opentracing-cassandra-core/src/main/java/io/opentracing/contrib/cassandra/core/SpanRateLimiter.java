@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import io.opentracing.contrib.cassandra.nameprovider.CqlFingerprint;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which queries get a span. Every query has its own token bucket, so hot queries cannot
+ * crowd out rare ones, and all queries share a global bucket. Queries opted out of tracing never
+ * get a span. Buckets are keyed by prepared id for prepared statements, and else by the {@link
+ * CqlFingerprint} of the query, so queries differing only by their inlined values share a bucket.
+ *
+ * <p>The number of buckets is bounded. Buckets that filled up again are evicted, they are
+ * equivalent to new ones. Queries beyond the bound share a single bucket until buckets are evicted.
+ *
+ * <p>Shared by the driver modules, not part of the public API.
+ */
+public class SpanRateLimiter {
+
+  private static final int MAXIMUM_QUERIES = 10000;
+  // buckets fill up within a second, more frequent sweeps would mostly find none
+  private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Set<String> untracedQueries;
+  private final CqlFingerprints fingerprints;
+  private final double queryRate;
+  private final int maximumQueries;
+  private final ConcurrentMap<Object, Bucket> buckets = new ConcurrentHashMap<>();
+  private final AtomicLong nextSweepNanos;
+  private final Bucket overflow;
+  private final Bucket global;
+
+  /**
+   * @param fingerprints fingerprints of the session
+   */
+  public SpanRateLimiter(double queryRate, double globalRate, Set<String> untracedQueries,
+      CqlFingerprints fingerprints) {
+    this(queryRate, globalRate, untracedQueries, fingerprints, MAXIMUM_QUERIES, System.nanoTime());
+  }
+
+  SpanRateLimiter(double queryRate, double globalRate, Set<String> untracedQueries,
+      CqlFingerprints fingerprints, int maximumQueries, long nowNanos) {
+    this.untracedQueries = untracedQueries;
+    this.fingerprints = fingerprints;
+    this.queryRate = queryRate;
+    this.maximumQueries = maximumQueries;
+    this.nextSweepNanos = new AtomicLong(nowNanos);
+    this.overflow = queryRate > 0 ? new Bucket(queryRate, nowNanos) : null;
+    this.global = globalRate > 0 ? new Bucket(globalRate, nowNanos) : null;
+  }
+
+  /**
+   * @param preparedId id of the prepared statement of the query, null for other queries
+   */
+  public boolean tryAcquire(String query, String preparedId) {
+    return tryAcquire(query, preparedId, System.nanoTime());
+  }
+
+  boolean tryAcquire(String query, String preparedId, long nowNanos) {
+    if (!untracedQueries.isEmpty() && untracedQueries.contains(query)) {
+      return false;
+    }
+    // the query bucket goes first, so queries over their own budget leave the global one alone
+    if (queryRate > 0 && !bucket(query, preparedId, nowNanos).tryAcquire(nowNanos)) {
+      return false;
+    }
+    return global == null || global.tryAcquire(nowNanos);
+  }
+
+  int size() {
+    return buckets.size();
+  }
+
+  private Bucket bucket(String query, String preparedId, long nowNanos) {
+    Object key = preparedId != null ? preparedId : fingerprints.of(query).getHash();
+    Bucket bucket = buckets.get(key);
+    if (bucket == null) {
+      if (buckets.size() >= maximumQueries) {
+        sweep(nowNanos);
+        if (buckets.size() >= maximumQueries) {
+          return overflow;
+        }
+      }
+      bucket = new Bucket(queryRate, nowNanos);
+      Bucket existing = buckets.putIfAbsent(key, bucket);
+      if (existing != null) {
+        bucket = existing;
+      }
+    }
+    return bucket;
+  }
+
+  /*
+    Evicts the buckets that filled up again, at most once per interval.
+   */
+  private void sweep(long nowNanos) {
+    long next = nextSweepNanos.get();
+    if (nowNanos - next < 0
+        || !nextSweepNanos.compareAndSet(next, nowNanos + SWEEP_INTERVAL_NANOS)) {
+      return;
+    }
+    Iterator<Map.Entry<Object, Bucket>> iterator = buckets.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getValue().isFull(nowNanos)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Lock-free token bucket holding one second of tokens, kept as the time at which the bucket will
+   * be full again (generic cell rate algorithm).
+   */
+  private static class Bucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong fullAt;
+
+    Bucket(double rate, long nowNanos) {
+      this.intervalNanos = (long) (1_000_000_000L / rate);
+      this.toleranceNanos = intervalNanos * (long) Math.max(1, Math.ceil(rate));
+      this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    boolean isFull(long nowNanos) {
+      return fullAt.get() - nowNanos <= 0;
+    }
+
+    boolean tryAcquire(long nowNanos) {
+      while (true) {
+        long fullAt = this.fullAt.get();
+        long next = (fullAt - nowNanos < 0 ? nowNanos : fullAt) + intervalNanos;
+        if (next - nowNanos > toleranceNanos) {
+          return false;
+        }
+        if (this.fullAt.compareAndSet(fullAt, next)) {
+          return true;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import io.opentracing.Span;
+import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.contrib.cassandra.nameprovider.CqlFingerprint;
+import io.opentracing.tag.StringTag;
+import io.opentracing.tag.Tags;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tags spans with their statement. The statement is optionally normalized by {@link
+ * CqlFingerprint} and truncated to a maximum length, keeping its head and tail. In dictionary
+ * mode, spans carry the id of their statement, the prepared id or else the fingerprint id, and
+ * only the first span of a statement in every window carries its text.
+ *
+ * <p>Shared by the driver modules, not part of the public API.
+ */
+public class StatementTags {
+
+  public static final StringTag STATEMENT_FINGERPRINT = new StringTag("db.statement.fingerprint");
+  public static final StringTag STATEMENT_ID = new StringTag("db.statement.id");
+
+  static final String TRUNCATION_MARKER = "...";
+  // the dictionary is cleared when full, statements are then sent again
+  private static final int MAXIMUM_DICTIONARY_SIZE = 10000;
+
+  private final boolean fingerprints;
+  private final CqlFingerprints cqlFingerprints;
+  private final int maxLength;
+  private final long dictionaryWindowNanos;
+  private final ConcurrentMap<String, Long> dictionary = new ConcurrentHashMap<>();
+
+  /**
+   * @param maxLength maximum length of the statement text, {@link Integer#MAX_VALUE} if unlimited
+   * @param dictionaryWindowNanos window in which a statement text is sent once, 0 to send it on
+   * every span
+   * @param cqlFingerprints fingerprints of the session
+   */
+  public StatementTags(boolean fingerprints, int maxLength, long dictionaryWindowNanos,
+      CqlFingerprints cqlFingerprints) {
+    this.fingerprints = fingerprints;
+    this.cqlFingerprints = cqlFingerprints;
+    this.maxLength = maxLength;
+    this.dictionaryWindowNanos = dictionaryWindowNanos;
+  }
+
+  /**
+   * @param preparedId id of the prepared statement of the query, null for other queries
+   */
+  public void addTags(Span span, String query, String preparedId) {
+    CqlFingerprint fingerprint = fingerprints || (dictionaryWindowNanos > 0 && preparedId == null)
+        ? cqlFingerprints.of(query) : null;
+    if (fingerprints) {
+      STATEMENT_FINGERPRINT.set(span, fingerprint.getId());
+    }
+    if (dictionaryWindowNanos > 0) {
+      String id = preparedId != null ? preparedId : fingerprint.getId();
+      STATEMENT_ID.set(span, id);
+      if (!firstInWindow(id, System.nanoTime())) {
+        return;
+      }
+    }
+    Tags.DB_STATEMENT.set(span, statement(query, fingerprint));
+  }
+
+  /**
+   * @param preparedId id of the prepared statement of the query, null for other queries
+   */
+  public void addTags(SpanBuilder spanBuilder, String query, String preparedId) {
+    CqlFingerprint fingerprint = fingerprints || (dictionaryWindowNanos > 0 && preparedId == null)
+        ? cqlFingerprints.of(query) : null;
+    if (fingerprints) {
+      spanBuilder.withTag(STATEMENT_FINGERPRINT.getKey(), fingerprint.getId());
+    }
+    if (dictionaryWindowNanos > 0) {
+      String id = preparedId != null ? preparedId : fingerprint.getId();
+      spanBuilder.withTag(STATEMENT_ID.getKey(), id);
+      if (!firstInWindow(id, System.nanoTime())) {
+        return;
+      }
+    }
+    spanBuilder.withTag(Tags.DB_STATEMENT.getKey(), statement(query, fingerprint));
+  }
+
+  private String statement(String query, CqlFingerprint fingerprint) {
+    return truncate(fingerprints ? fingerprint.getStatement() : query, maxLength);
+  }
+
+  boolean firstInWindow(String id, long nowNanos) {
+    Long sentNanos = dictionary.get(id);
+    if (sentNanos != null && nowNanos - sentNanos < dictionaryWindowNanos) {
+      return false;
+    }
+    if (sentNanos == null) {
+      if (dictionary.size() >= MAXIMUM_DICTIONARY_SIZE) {
+        dictionary.clear();
+      }
+      return dictionary.putIfAbsent(id, nowNanos) == null;
+    }
+    // only one of the spans racing for a new window carries the text
+    return dictionary.replace(id, sentNanos, nowNanos);
+  }
+
+  /*
+    Keeps the head and the tail of the text, where the kind of statement and its conditions are.
+   */
+  static String truncate(String text, int maxLength) {
+    if (text.length() <= maxLength) {
+      return text;
+    }
+    if (maxLength <= TRUNCATION_MARKER.length()) {
+      return text.substring(0, maxLength);
+    }
+    int kept = maxLength - TRUNCATION_MARKER.length();
+    int head = kept - kept / 2;
+    return text.substring(0, head) + TRUNCATION_MARKER
+        + text.substring(text.length() - kept / 2);
+  }
+}
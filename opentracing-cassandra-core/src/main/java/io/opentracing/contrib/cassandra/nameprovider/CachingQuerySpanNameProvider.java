@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizes the span names returned by another {@link QuerySpanNameProvider}.
+ *
+ * <p>The cache is bounded both by number of entries and by weight, where the weight of an entry
+ * is the number of characters in the query plus the number of characters in its span name. When
+ * either bound is exceeded arbitrary entries are evicted until the cache fits again. Queries
+ * heavier than the maximum weight are never cached.
+ */
+public class CachingQuerySpanNameProvider implements QuerySpanNameProvider {
+
+  static final int DEFAULT_MAXIMUM_SIZE = 1024;
+  static final long DEFAULT_MAXIMUM_WEIGHT = 1024 * 1024;
+
+  private final QuerySpanNameProvider delegate;
+  private final int maximumSize;
+  private final long maximumWeight;
+  private final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<>();
+  private final AtomicLong weight = new AtomicLong();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  public static class Builder {
+
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long maximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+
+    // Maximum number of cached span names, defaults to 1024
+    public Builder withMaximumSize(int maximumSize) {
+      if (maximumSize < 0) {
+        throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+      }
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    // Maximum number of cached characters (queries and span names), defaults to 1M
+    public Builder withMaximumWeight(long maximumWeight) {
+      if (maximumWeight < 0) {
+        throw new IllegalArgumentException("maximumWeight must not be negative: " + maximumWeight);
+      }
+      this.maximumWeight = maximumWeight;
+      return this;
+    }
+
+    public CachingQuerySpanNameProvider build(QuerySpanNameProvider delegate) {
+      if (delegate == null) {
+        throw new NullPointerException("delegate");
+      }
+      return new CachingQuerySpanNameProvider(delegate, maximumSize, maximumWeight);
+    }
+  }
+
+  CachingQuerySpanNameProvider(QuerySpanNameProvider delegate, int maximumSize,
+      long maximumWeight) {
+    this.delegate = delegate;
+    this.maximumSize = maximumSize;
+    this.maximumWeight = maximumWeight;
+  }
+
+  /**
+   * Wraps the given provider into a cache with default bounds. Providers that are already cached
+   * or that return a constant name are returned unchanged.
+   *
+   * @param provider provider to wrap
+   * @return caching provider
+   */
+  public static QuerySpanNameProvider wrap(QuerySpanNameProvider provider) {
+    if (provider == null
+        || provider instanceof CachingQuerySpanNameProvider
+        || provider instanceof CustomStringSpanName) {
+      return provider;
+    }
+    return newBuilder().build(provider);
+  }
+
+  @Override
+  public String querySpanName(String query) {
+    if (query == null) {
+      return delegate.querySpanName(null);
+    }
+
+    String spanName = cache.get(query);
+    if (spanName != null) {
+      hitCount.increment();
+      return spanName;
+    }
+    missCount.increment();
+
+    spanName = delegate.querySpanName(query);
+    if (spanName == null) {
+      return null;
+    }
+
+    long entryWeight = weigh(query, spanName);
+    if (entryWeight <= maximumWeight && cache.putIfAbsent(query, spanName) == null) {
+      weight.addAndGet(entryWeight);
+      evictIfNeeded();
+    }
+    return spanName;
+  }
+
+  private void evictIfNeeded() {
+    Iterator<Map.Entry<String, String>> iterator = cache.entrySet().iterator();
+    while ((cache.size() > maximumSize || weight.get() > maximumWeight) && iterator.hasNext()) {
+      Map.Entry<String, String> entry = iterator.next();
+      if (cache.remove(entry.getKey(), entry.getValue())) {
+        weight.addAndGet(-weigh(entry.getKey(), entry.getValue()));
+        evictionCount.increment();
+      }
+    }
+  }
+
+  private static long weigh(String query, String spanName) {
+    return (long) query.length() + spanName.length();
+  }
+
+  public QuerySpanNameProvider getDelegate() {
+    return delegate;
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public long weight() {
+    return weight.get();
+  }
+
+  public long hitCount() {
+    return hitCount.sum();
+  }
+
+  public long missCount() {
+    return missCount.sum();
+  }
+
+  public long evictionCount() {
+    return evictionCount.sum();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+}
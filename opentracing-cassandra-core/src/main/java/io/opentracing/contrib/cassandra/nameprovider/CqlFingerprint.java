@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+import java.util.Arrays;
+
+/**
+ * Shape of a CQL query, with its literals replaced by {@code ?} so that queries differing only by
+ * their values share the same fingerprint. Strings, numbers, UUIDs, blobs, booleans and negative
+ * numbers are replaced, {@code IN} lists of values and list, set and map literals are collapsed to a
+ * single value, whitespace and comments are normalized. The fingerprint is identified by a 64-bit FNV-1a hash of the normalized
+ * statement.
+ *
+ * <p>Fingerprints are computed on every call, the instrumented sessions cache them per session.
+ */
+public final class CqlFingerprint {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final String statement;
+  private final long hash;
+  private final String id;
+
+  private CqlFingerprint(String statement) {
+    this.statement = statement;
+    this.hash = hash(statement);
+    this.id = hex(hash);
+  }
+
+  /**
+   * @param query CQL query, may be null
+   * @return fingerprint of the query, of the empty statement for null
+   */
+  public static CqlFingerprint of(String query) {
+    return new CqlFingerprint(normalize(query == null ? "" : query));
+  }
+
+  /**
+   * @return normalized statement, e.g. {@code SELECT * FROM ks.t WHERE id IN (?)}
+   */
+  public String getStatement() {
+    return statement;
+  }
+
+  public long getHash() {
+    return hash;
+  }
+
+  /**
+   * @return hash as 16 hexadecimal digits
+   */
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public String toString() {
+    return statement;
+  }
+
+  static String normalize(String query) {
+    CqlTokenizer tokenizer = new CqlTokenizer(query);
+    StringBuilder normalized = new StringBuilder(Math.min(query.length(), 256));
+    // offsets in normalized of the open brackets, negative for those opening an IN list or a
+    // collection literal
+    int[] groups = new int[8];
+    int depth = 0;
+    boolean afterIn = false;
+    int previousType = CqlTokenizer.EOF;
+    char previousSymbol = 0;
+    int minusEnd = -1;
+
+    int type;
+    while ((type = tokenizer.next()) != CqlTokenizer.EOF) {
+      boolean literal = type == CqlTokenizer.LITERAL
+          || tokenizer.isKeyword("TRUE") || tokenizer.isKeyword("FALSE")
+          || tokenizer.isKeyword("NAN") || tokenizer.isKeyword("INFINITY");
+      if (minusEnd >= 0) {
+        // a minus right before a value is its sign, unless it follows an operand
+        boolean sign = literal && tokenizer.start() == minusEnd;
+        minusEnd = -1;
+        if (sign) {
+          append(normalized, CqlTokenizer.LITERAL, '?', previousType, previousSymbol);
+          previousType = CqlTokenizer.LITERAL;
+          previousSymbol = 0;
+          continue;
+        }
+        append(normalized, CqlTokenizer.SYMBOL, '-', previousType, previousSymbol);
+        previousType = CqlTokenizer.SYMBOL;
+        previousSymbol = '-';
+      }
+      if (tokenizer.isSymbol('-')
+          && (previousType == CqlTokenizer.EOF || previousType == CqlTokenizer.SYMBOL
+          && previousSymbol != ')' && previousSymbol != '?')) {
+        minusEnd = tokenizer.end();
+        continue;
+      }
+
+      char symbol = type == CqlTokenizer.SYMBOL ? tokenizer.text().charAt(0) : 0;
+      if (literal) {
+        append(normalized, CqlTokenizer.LITERAL, '?', previousType, previousSymbol);
+        type = CqlTokenizer.LITERAL;
+      } else if (symbol == '(' || symbol == '[' || symbol == '{') {
+        append(normalized, type, symbol, previousType, previousSymbol);
+        if (depth == groups.length) {
+          groups = Arrays.copyOf(groups, depth * 2);
+        }
+        groups[depth++] = afterIn || symbol != '(' ? -normalized.length() : normalized.length();
+      } else if ((symbol == ')' || symbol == ']' || symbol == '}') && depth > 0) {
+        int open = groups[--depth];
+        if (open < 0) {
+          collapse(normalized, -open);
+        }
+        append(normalized, type, symbol, previousType, previousSymbol);
+      } else if (type == CqlTokenizer.SYMBOL) {
+        append(normalized, type, symbol, previousType, previousSymbol);
+      } else {
+        appendSeparator(normalized, type, (char) 0, previousType, previousSymbol);
+        normalized.append(query, tokenizer.start(), tokenizer.end());
+      }
+      afterIn = tokenizer.isKeyword("IN");
+      previousType = type;
+      previousSymbol = symbol;
+    }
+    if (minusEnd >= 0) {
+      append(normalized, CqlTokenizer.SYMBOL, '-', previousType, previousSymbol);
+    }
+    return normalized.toString();
+  }
+
+  private static void append(StringBuilder normalized, int type, char c, int previousType,
+      char previousSymbol) {
+    appendSeparator(normalized, type, c, previousType, previousSymbol);
+    normalized.append(c);
+  }
+
+  /*
+    Canonical spacing: tokens are separated by a single space, except before , ) . ; ] } and after
+    ( . [ {, between the characters of operators like >= and after the colon of a named marker.
+   */
+  private static void appendSeparator(StringBuilder normalized, int type, char c,
+      int previousType, char previousSymbol) {
+    if (previousType == CqlTokenizer.EOF) {
+      return;
+    }
+    if (type == CqlTokenizer.SYMBOL && ",).;]}".indexOf(c) >= 0) {
+      return;
+    }
+    if (previousType == CqlTokenizer.SYMBOL) {
+      if ("(.[{".indexOf(previousSymbol) >= 0) {
+        return;
+      }
+      if (type == CqlTokenizer.SYMBOL && "<>=!".indexOf(previousSymbol) >= 0
+          && "<>=".indexOf(c) >= 0) {
+        return;
+      }
+      if (previousSymbol == ':' && type == CqlTokenizer.WORD) {
+        return;
+      }
+    }
+    normalized.append(' ');
+  }
+
+  /*
+    Collapses the values of an IN list or of a collection literal starting at the given offset to
+    the first one, when they all have the same shape, e.g. (?, ?, ?) to (?), ((?, ?), (?, ?)) to
+    ((?, ?)), [?, ?] to [?] and {? : ?, ? : ?} to {? : ?}.
+   */
+  private static void collapse(StringBuilder normalized, int from) {
+    int firstEnd = -1;
+    int itemStart = from;
+    int depth = 0;
+    for (int i = from; i <= normalized.length(); i++) {
+      char c = i < normalized.length() ? normalized.charAt(i) : ',';
+      if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        if (firstEnd < 0) {
+          firstEnd = i;
+        } else if (i - itemStart != firstEnd - from
+            || !normalized.substring(itemStart, i).equals(normalized.substring(from, firstEnd))) {
+          return;
+        }
+        // skip the space after the comma
+        itemStart = i + 2;
+      } else if ("?, :".indexOf(c) < 0) {
+        return;
+      }
+    }
+    normalized.setLength(firstEnd);
+  }
+
+  private static long hash(String statement) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < statement.length(); i++) {
+      char c = statement.charAt(i);
+      hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+      hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static String hex(long value) {
+    char[] hex = new char[16];
+    for (int i = 15; i >= 0; i--) {
+      hex[i] = HEX[(int) value & 0xF];
+      value >>>= 4;
+    }
+    return new String(hex);
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+/**
+ * Forward-only CQL tokenizer working directly on the query string. Tokens are exposed as
+ * {@code [start, end)} offsets into the query, so scanning a query does not copy it. Whitespace
+ * and comments are skipped; string literals, dollar-quoted strings, numbers, UUIDs and quoted
+ * identifiers are returned as single tokens.
+ */
+final class CqlTokenizer {
+
+  static final int EOF = 0;
+  static final int WORD = 1;
+  static final int QUOTED_IDENTIFIER = 2;
+  static final int LITERAL = 3;
+  static final int SYMBOL = 4;
+
+  private static final int UUID_LENGTH = 36;
+
+  private final String query;
+  private final int length;
+  private int position;
+  private int type = EOF;
+  private int start;
+  private int end;
+
+  CqlTokenizer(String query) {
+    this.query = query;
+    this.length = query.length();
+  }
+
+  /**
+   * Advances to the next token.
+   *
+   * @return type of the token
+   */
+  int next() {
+    skipWhitespaceAndComments();
+    start = position;
+    if (position >= length) {
+      end = position;
+      return type = EOF;
+    }
+
+    char c = query.charAt(position);
+    if (isUuid(position)) {
+      position += UUID_LENGTH;
+      type = LITERAL;
+    } else if (isDigit(c)) {
+      position = skipNumber(position);
+      type = LITERAL;
+    } else if (isWordPart(c)) {
+      do {
+        position++;
+      } while (position < length && isWordPart(query.charAt(position)));
+      type = WORD;
+    } else if (c == '"') {
+      position = skipQuoted('"', position + 1);
+      type = QUOTED_IDENTIFIER;
+    } else if (c == '\'') {
+      position = skipQuoted('\'', position + 1);
+      type = LITERAL;
+    } else if (c == '$' && position + 1 < length && query.charAt(position + 1) == '$') {
+      int close = query.indexOf("$$", position + 2);
+      position = close < 0 ? length : close + 2;
+      type = LITERAL;
+    } else {
+      position++;
+      type = SYMBOL;
+    }
+    end = position;
+    return type;
+  }
+
+  boolean isKeyword(String upperCaseKeyword) {
+    int keywordLength = upperCaseKeyword.length();
+    return type == WORD
+        && end - start == keywordLength
+        && query.regionMatches(true, start, upperCaseKeyword, 0, keywordLength);
+  }
+
+  int type() {
+    return type;
+  }
+
+  int start() {
+    return start;
+  }
+
+  int end() {
+    return end;
+  }
+
+  boolean isWord() {
+    return type == WORD;
+  }
+
+  /**
+   * @return text of the current token
+   */
+  String text() {
+    return query.substring(start, end);
+  }
+
+  boolean isSymbol(char symbol) {
+    return type == SYMBOL && query.charAt(start) == symbol;
+  }
+
+  boolean isIdentifier() {
+    return type == WORD || type == QUOTED_IDENTIFIER;
+  }
+
+  /**
+   * Advances until a keyword is found.
+   *
+   * @return {@code true} if the keyword was found, {@code false} if the end of the query was
+   * reached
+   */
+  boolean skipTo(String upperCaseKeyword) {
+    while (next() != EOF) {
+      if (isKeyword(upperCaseKeyword)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Advances past the next token if it is the given keyword, otherwise stays on the current token.
+   *
+   * @return {@code true} if the keyword was consumed
+   */
+  boolean skipKeyword(String upperCaseKeyword) {
+    int savedPosition = position;
+    int savedType = type;
+    int savedStart = start;
+    int savedEnd = end;
+    next();
+    if (isKeyword(upperCaseKeyword)) {
+      return true;
+    }
+    position = savedPosition;
+    type = savedType;
+    start = savedStart;
+    end = savedEnd;
+    return false;
+  }
+
+  /**
+   * Reads a possibly qualified name ({@code name} or {@code keyspace.name}) starting at the next
+   * token. Quoted identifiers are returned without quotes.
+   *
+   * @return the name or {@code null} if the next token is not an identifier
+   */
+  String nextQualifiedName() {
+    if (next() == EOF || !isIdentifier()) {
+      return null;
+    }
+    int firstStart = start;
+    int firstEnd = end;
+    boolean quoted = type == QUOTED_IDENTIFIER;
+
+    int savedPosition = position;
+    next();
+    if (!isSymbol('.')) {
+      position = savedPosition;
+      return quoted ? unquote(firstStart, firstEnd) : query.substring(firstStart, firstEnd);
+    }
+    int dotStart = start;
+    next();
+    if (!isIdentifier()) {
+      position = savedPosition;
+      return quoted ? unquote(firstStart, firstEnd) : query.substring(firstStart, firstEnd);
+    }
+
+    if (!quoted && type == WORD && dotStart == firstEnd && start == dotStart + 1) {
+      return query.substring(firstStart, end);
+    }
+    StringBuilder name = new StringBuilder(end - firstStart);
+    appendIdentifier(name, firstStart, firstEnd, quoted);
+    name.append('.');
+    appendIdentifier(name, start, end, type == QUOTED_IDENTIFIER);
+    return name.toString();
+  }
+
+  private void appendIdentifier(StringBuilder name, int from, int to, boolean quoted) {
+    if (!quoted) {
+      name.append(query, from, to);
+      return;
+    }
+    int last = query.charAt(to - 1) == '"' && to - 1 > from ? to - 1 : to;
+    for (int i = from + 1; i < last; i++) {
+      char c = query.charAt(i);
+      name.append(c);
+      if (c == '"') {
+        // escaped quote
+        i++;
+      }
+    }
+  }
+
+  private String unquote(int from, int to) {
+    StringBuilder name = new StringBuilder(to - from);
+    appendIdentifier(name, from, to, true);
+    return name.toString();
+  }
+
+  private void skipWhitespaceAndComments() {
+    while (position < length) {
+      char c = query.charAt(position);
+      if (Character.isWhitespace(c)) {
+        position++;
+      } else if ((c == '-' || c == '/') && position + 1 < length
+          && query.charAt(position + 1) == c) {
+        int newLine = query.indexOf('\n', position + 2);
+        position = newLine < 0 ? length : newLine + 1;
+      } else if (c == '/' && position + 1 < length && query.charAt(position + 1) == '*') {
+        int close = query.indexOf("*/", position + 2);
+        position = close < 0 ? length : close + 2;
+      } else {
+        return;
+      }
+    }
+  }
+
+  /*
+    Returns the offset right after the closing quote, treating doubled quotes as escapes.
+   */
+  private int skipQuoted(char quote, int from) {
+    int i = from;
+    while (i < length) {
+      if (query.charAt(i) == quote) {
+        if (i + 1 < length && query.charAt(i + 1) == quote) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return length;
+  }
+
+  /*
+    Returns the offset right after a number, including its fraction and exponent. Hex blobs,
+    durations like 1h30m and other word characters following the digits belong to the number.
+   */
+  private int skipNumber(int from) {
+    int i = skipWordParts(from);
+    if (i + 1 < length && query.charAt(i) == '.' && isDigit(query.charAt(i + 1))) {
+      i = skipWordParts(i + 1);
+    }
+    char last = query.charAt(i - 1);
+    if ((last == 'e' || last == 'E') && i + 1 < length
+        && (query.charAt(i) == '+' || query.charAt(i) == '-') && isDigit(query.charAt(i + 1))) {
+      i = skipWordParts(i + 1);
+    }
+    return i;
+  }
+
+  private int skipWordParts(int from) {
+    int i = from;
+    while (i < length && isWordPart(query.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private boolean isUuid(int from) {
+    if (from + UUID_LENGTH > length
+        || (from + UUID_LENGTH < length && isWordPart(query.charAt(from + UUID_LENGTH)))) {
+      return false;
+    }
+    for (int i = 0; i < UUID_LENGTH; i++) {
+      char c = query.charAt(from + i);
+      if (i == 8 || i == 13 || i == 18 || i == 23) {
+        if (c != '-') {
+          return false;
+        }
+      } else if (Character.digit(c, 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isWordPart(char c) {
+    return c == '_' || Character.isLetterOrDigit(c);
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+/**
+ * Returns the query with its literals replaced by {@code ?} as the span name, so queries with
+ * inlined values do not create a span name per value. See {@link CqlFingerprint}.
+ */
+public class NormalizedQuerySpanName implements QuerySpanNameProvider {
+
+  public static class Builder implements QuerySpanNameProvider.Builder {
+
+    @Override
+    public QuerySpanNameProvider build() {
+      return new NormalizedQuerySpanName();
+    }
+  }
+
+  NormalizedQuerySpanName() {
+  }
+
+  @Override
+  public String querySpanName(String query) {
+    if (query == null || query.equals("")) {
+      return "N/A";
+    }
+    // only normalized, the sessions cache span names with CachingQuerySpanNameProvider
+    String statement = CqlFingerprint.normalize(query);
+    return statement.isEmpty() ? "N/A" : statement;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+/**
+ * @author Jordan J Lopez Returns formatted string wtih extracted Cassandra query method and target
+ * entity as span name Target entity can include keyspace, table, index, view, or none
+ */
+public class QueryMethodTableSpanName implements QuerySpanNameProvider {
+
+  public static class Builder implements QuerySpanNameProvider.Builder {
+
+    @Override
+    public QuerySpanNameProvider build() {
+      return new QueryMethodTableSpanName();
+    }
+
+  }
+
+  QueryMethodTableSpanName() {
+  }
+
+  // Pulled from http://cassandra.apache.org/doc/latest/cql/
+  enum Method {
+    SELECT, INSERT, UPDATE, DELETE,
+    CREATE_KEYSPACE, USE, ALTER_KEYSPACE, DROP_KEYSPACE, CREATE_TABLE,
+    ALTER_TABLE, DROP_TABLE, TRUNCATE, CREATE_INDEX, DROP_INDEX,
+    CREATE_MATERIALIZED_VIEW, ALTER_MATERIALIZED_VIEW,
+    DROP_MATERIALIZED_VIEW;
+
+    private final String spanNamePrefix = "Cassandra." + name() + " - ";
+  }
+
+  @Override
+  public String querySpanName(String query) {
+    // Short Circuit
+    if (query == null || query.isEmpty()) {
+      return "Cassandra";
+    }
+
+    // The query is scanned once, the method is the leading keyword(s) of the statement
+    CqlTokenizer tokenizer = new CqlTokenizer(query);
+    tokenizer.next();
+    Method method = null;
+    String target = null;
+    if (tokenizer.isKeyword("SELECT") || tokenizer.isKeyword("DELETE")) {
+      // SELECT ... FROM X ... / DELETE ... FROM X ...
+      method = tokenizer.isKeyword("SELECT") ? Method.SELECT : Method.DELETE;
+      if (tokenizer.skipTo("FROM")) {
+        target = tokenizer.nextQualifiedName();
+      }
+    } else if (tokenizer.isKeyword("INSERT")) {
+      // INSERT INTO X ...
+      method = Method.INSERT;
+      if (tokenizer.skipKeyword("INTO")) {
+        target = tokenizer.nextQualifiedName();
+      }
+    } else if (tokenizer.isKeyword("UPDATE")) {
+      // UPDATE X ...
+      method = Method.UPDATE;
+      target = tokenizer.nextQualifiedName();
+    } else if (tokenizer.isKeyword("BEGIN") || tokenizer.isKeyword("APPLY")) {
+      // BEGIN [UNLOGGED | COUNTER] BATCH ... / APPLY BATCH
+      return tokenizer.skipTo("BATCH") ? "Cassandra.BATCH" : "Cassandra";
+    } else if (tokenizer.isKeyword("USE")) {
+      // USE X
+      method = Method.USE;
+      target = tokenizer.nextQualifiedName();
+    } else if (tokenizer.isKeyword("TRUNCATE")) {
+      // TRUNCATE [TABLE] X
+      method = Method.TRUNCATE;
+      tokenizer.skipKeyword("TABLE");
+      target = tokenizer.nextQualifiedName();
+    } else if (tokenizer.isKeyword("CREATE")) {
+      // CREATE [CUSTOM] INDEX | KEYSPACE | TABLE | MATERIALIZED VIEW [IF NOT EXISTS] X ...
+      tokenizer.skipKeyword("CUSTOM");
+      method = definitionMethod(tokenizer, Method.CREATE_KEYSPACE, Method.CREATE_TABLE,
+          Method.CREATE_INDEX, Method.CREATE_MATERIALIZED_VIEW);
+      if (method != null) {
+        if (tokenizer.skipKeyword("IF")) {
+          tokenizer.skipKeyword("NOT");
+          tokenizer.skipKeyword("EXISTS");
+        }
+        target = tokenizer.nextQualifiedName();
+        if (method == Method.CREATE_INDEX && "ON".equalsIgnoreCase(target)) {
+          // unnamed index: CREATE INDEX ON X (...)
+          target = tokenizer.nextQualifiedName();
+        }
+      }
+    } else if (tokenizer.isKeyword("ALTER")) {
+      // ALTER KEYSPACE | TABLE | MATERIALIZED VIEW X ...
+      method = definitionMethod(tokenizer, Method.ALTER_KEYSPACE, Method.ALTER_TABLE, null,
+          Method.ALTER_MATERIALIZED_VIEW);
+      if (method != null) {
+        target = tokenizer.nextQualifiedName();
+      }
+    } else if (tokenizer.isKeyword("DROP")) {
+      // DROP INDEX | KEYSPACE | TABLE | MATERIALIZED VIEW [IF EXISTS] X ...
+      method = definitionMethod(tokenizer, Method.DROP_KEYSPACE, Method.DROP_TABLE,
+          Method.DROP_INDEX, Method.DROP_MATERIALIZED_VIEW);
+      if (method != null) {
+        if (tokenizer.skipKeyword("IF")) {
+          tokenizer.skipKeyword("EXISTS");
+        }
+        target = tokenizer.nextQualifiedName();
+      }
+    }
+
+    if (method == null) {
+      return "Cassandra";
+    }
+    return method.spanNamePrefix + (target == null ? "N/A" : target);
+  }
+
+  /*
+    Reads the entity kind following CREATE, ALTER or DROP and returns the matching method,
+    or null if the kind is not supported.
+   */
+  private static Method definitionMethod(CqlTokenizer tokenizer, Method keyspace, Method table,
+      Method index, Method materializedView) {
+    if (tokenizer.skipKeyword("KEYSPACE")) {
+      return keyspace;
+    } else if (tokenizer.skipKeyword("TABLE")) {
+      return table;
+    } else if (index != null && tokenizer.skipKeyword("INDEX")) {
+      return index;
+    } else if (tokenizer.skipKeyword("MATERIALIZED") && tokenizer.skipKeyword("VIEW")) {
+      return materializedView;
+    }
+    return null;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+import java.util.Locale;
+
+/**
+ * Classifies statements by their leading keyword, e.g. {@code SELECT}, {@code INSERT} or
+ * {@code CREATE}. Comments before the keyword are skipped.
+ */
+public final class StatementKind {
+
+  private StatementKind() {
+  }
+
+  /**
+   * @return upper case leading keyword of the query, {@code null} if there is none
+   */
+  public static String of(String query) {
+    if (query == null || query.isEmpty()) {
+      return null;
+    }
+    CqlTokenizer tokenizer = new CqlTokenizer(query);
+    tokenizer.next();
+    return tokenizer.isWord() ? tokenizer.text().toUpperCase(Locale.ROOT) : null;
+  }
+}
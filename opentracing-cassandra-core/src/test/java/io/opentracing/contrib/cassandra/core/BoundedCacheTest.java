@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.function.Function;
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+  private static final Function<Integer, String> TO_STRING = String::valueOf;
+
+  @Test
+  public void cachesValues() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(10);
+    String value = cache.get(1, TO_STRING);
+
+    assertEquals("1", value);
+    assertSame(value, cache.get(1, TO_STRING));
+  }
+
+  @Test
+  public void evictsSomeEntriesOnly() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(10);
+    for (int key = 0; key < 100; key++) {
+      assertEquals(String.valueOf(key), cache.get(key, TO_STRING));
+      assertEquals(Math.min(key + 1, 10), cache.size());
+    }
+  }
+
+  @Test
+  public void zeroSizeCachesNothing() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(0);
+
+    assertEquals("1", cache.get(1, TO_STRING));
+    assertEquals(0, cache.size());
+  }
+}
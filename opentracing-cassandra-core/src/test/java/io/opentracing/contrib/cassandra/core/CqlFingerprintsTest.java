@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class CqlFingerprintsTest {
+
+  @Test
+  public void cachesFingerprintsOfQueries() {
+    CqlFingerprints fingerprints = new CqlFingerprints(2);
+    String query = "SELECT * FROM t WHERE id = 1";
+
+    assertSame(fingerprints.of(query), fingerprints.of(query));
+    assertEquals("SELECT * FROM t WHERE id = ?", fingerprints.of(query).getStatement());
+  }
+
+  @Test
+  public void evictsBeyondMaximumSize() {
+    CqlFingerprints fingerprints = new CqlFingerprints(2);
+    for (int id = 0; id < 10; id++) {
+      fingerprints.of("SELECT * FROM t WHERE id = " + id);
+    }
+
+    assertEquals(2, fingerprints.size());
+  }
+
+  @Test
+  public void longQueriesNotCached() {
+    CqlFingerprints fingerprints = new CqlFingerprints(2);
+    StringBuilder query = new StringBuilder("SELECT * FROM t WHERE id IN (0");
+    for (int id = 1; query.length() <= CqlFingerprints.MAXIMUM_CACHED_QUERY_LENGTH; id++) {
+      query.append(", ").append(id);
+    }
+    query.append(')');
+
+    assertEquals("SELECT * FROM t WHERE id IN (?)", fingerprints.of(query.toString())
+        .getStatement());
+    assertEquals(0, fingerprints.size());
+  }
+}
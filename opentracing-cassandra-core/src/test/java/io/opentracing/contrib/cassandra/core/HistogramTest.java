@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void bucketsAreContiguous() {
+    long previous = -1;
+    for (int bucket = 0; bucket < 200; bucket++) {
+      long highest = Histogram.highestValue(bucket);
+      assertEquals(bucket, Histogram.bucket(highest));
+      assertEquals(bucket, Histogram.bucket(previous + 1));
+      previous = highest;
+    }
+    assertEquals(Histogram.MAX_VALUE, Histogram.highestValue(Histogram.bucket(Long.MAX_VALUE)));
+    assertEquals(Histogram.bucket(Histogram.MAX_VALUE), Histogram.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void clampsHighValues() {
+    Histogram histogram = new Histogram();
+    histogram.record(Long.MAX_VALUE);
+
+    assertEquals(1, histogram.getCount());
+    assertEquals(Histogram.MAX_VALUE, histogram.getMax());
+    assertEquals(Histogram.MAX_VALUE, histogram.getMean(), 0.001);
+  }
+
+  @Test
+  public void contendedRecording() throws InterruptedException {
+    final Histogram histogram = new Histogram();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int value = 0; value < 10000; value++) {
+            histogram.record(value);
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(40000, histogram.getCount());
+    assertEquals(4999.5, histogram.getMean(), 0.001);
+  }
+
+  @Test
+  public void percentiles() {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500.5, histogram.getMean(), 0.001);
+    assertWithinPrecision(500, histogram.getValueAtPercentile(50));
+    assertWithinPrecision(990, histogram.getValueAtPercentile(99));
+    assertWithinPrecision(1000, histogram.getMax());
+  }
+
+  @Test
+  public void intervalSnapshots() {
+    Histogram histogram = new Histogram();
+    histogram.record(10);
+    histogram.record(20);
+    assertEquals(2, histogram.intervalSnapshot().getCount());
+
+    histogram.record(1000);
+    Histogram.Snapshot interval = histogram.intervalSnapshot();
+    assertEquals(1, interval.getCount());
+    assertEquals(1000, interval.getMean(), 0.001);
+    assertWithinPrecision(1000, interval.getValueAtPercentile(1));
+
+    assertEquals(0, histogram.intervalSnapshot().getCount());
+    assertEquals(3, histogram.snapshot().getCount());
+  }
+
+  @Test
+  public void boundedNames() {
+    Histograms histograms = new Histograms(2);
+    histograms.record("a", 1);
+    histograms.record("b", 1);
+    histograms.record("c", 1);
+    histograms.record("a", 1);
+
+    assertEquals(3, histograms.asMap().size());
+    assertEquals(2, histograms.asMap().get("a").getCount());
+    assertEquals(1, histograms.asMap().get(Histograms.OTHER).getCount());
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue(actual + " < " + expected, actual >= expected);
+    assertTrue(actual + " > " + expected, actual <= expected + expected / 8);
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import io.opentracing.contrib.cassandra.core.LatencyHistograms.Key;
+import java.util.Map;
+import org.junit.Test;
+
+public class LatencyHistogramsTest {
+
+  @Test
+  public void keyedBySpanNameTableAndHost() {
+    LatencyHistograms histograms = new LatencyHistograms(10);
+    histograms.record("select", "ks.t", "10.0.0.1:9042", 100);
+    histograms.record("select", "ks.t", "10.0.0.1:9042", 200);
+    histograms.record("select", "ks.t", "10.0.0.2:9042", 300);
+    histograms.record("execute", null, null, 400);
+
+    Map<Key, Histogram> map = histograms.asMap();
+    assertEquals(3, map.size());
+    assertEquals(2, map.get(new Key("select", "ks.t", "10.0.0.1:9042")).getCount());
+    assertEquals(1, map.get(new Key("select", "ks.t", "10.0.0.2:9042")).getCount());
+    assertEquals(1, map.get(new Key("execute", "", "")).getCount());
+  }
+
+  @Test
+  public void bounded() {
+    LatencyHistograms histograms = new LatencyHistograms(1);
+    histograms.record("a", "t", "h", 1);
+    histograms.record("b", "t", "h", 1);
+    histograms.record("a", "t", "h2", 1);
+
+    Map<Key, Histogram> map = histograms.asMap();
+    assertEquals(2, map.size());
+    assertEquals(2, map.get(LatencyHistograms.OTHER).getCount());
+  }
+
+  @Test
+  public void intervalSnapshot() {
+    LatencyHistograms histograms = new LatencyHistograms(10);
+    histograms.record("a", "t", "h", 1);
+    histograms.record("b", "t", "h", 1);
+    assertEquals(2, histograms.intervalSnapshot().size());
+
+    histograms.record("a", "t", "h", 5);
+    Map<Key, Histogram.Snapshot> interval = histograms.intervalSnapshot();
+    assertEquals(1, interval.size());
+    assertEquals(1, interval.get(new Key("a", "t", "h")).getCount());
+    assertNull(interval.get(new Key("b", "t", "h")));
+  }
+}
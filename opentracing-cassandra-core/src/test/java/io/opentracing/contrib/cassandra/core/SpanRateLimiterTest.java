@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SpanRateLimiterTest {
+
+  private static final String HOT = "SELECT * FROM test.session WHERE id = ?";
+  private static final String RARE = "SELECT * FROM test.report";
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final int MAXIMUM = 100;
+  private static final Set<String> NONE = Collections.emptySet();
+
+  private final CqlFingerprints fingerprints = new CqlFingerprints(MAXIMUM);
+
+  @Test
+  public void limitsEveryQuery() {
+    SpanRateLimiter limiter = new SpanRateLimiter(2, 0, NONE, fingerprints, MAXIMUM, 0);
+
+    assertTrue(limiter.tryAcquire(HOT, null, 0));
+    assertTrue(limiter.tryAcquire(HOT, null, 1));
+    assertFalse(limiter.tryAcquire(HOT, null, 2));
+    // other queries have their own budget
+    assertTrue(limiter.tryAcquire(RARE, null, 3));
+    // tokens come back over time
+    assertTrue(limiter.tryAcquire(HOT, null, SECOND / 2));
+    assertFalse(limiter.tryAcquire(HOT, null, SECOND / 2 + 1));
+  }
+
+  @Test
+  public void sharesGlobalBudget() {
+    SpanRateLimiter limiter = new SpanRateLimiter(0, 2, NONE, fingerprints, MAXIMUM, 0);
+
+    assertTrue(limiter.tryAcquire(HOT, null, 0));
+    assertTrue(limiter.tryAcquire(RARE, null, 1));
+    assertFalse(limiter.tryAcquire(RARE, null, 2));
+    assertTrue(limiter.tryAcquire(RARE, null, SECOND));
+  }
+
+  @Test
+  public void queriesOverBudgetDoNotUseGlobalBudget() {
+    SpanRateLimiter limiter = new SpanRateLimiter(1, 2, NONE, fingerprints, MAXIMUM, 0);
+
+    assertTrue(limiter.tryAcquire(HOT, null, 0));
+    assertFalse(limiter.tryAcquire(HOT, null, 1));
+    assertFalse(limiter.tryAcquire(HOT, null, 2));
+    assertTrue(limiter.tryAcquire(RARE, null, 3));
+  }
+
+  @Test
+  public void untracedQueries() {
+    Set<String> untraced = Collections.singleton(HOT);
+    SpanRateLimiter limiter = new SpanRateLimiter(0, 0, untraced, fingerprints, MAXIMUM, 0);
+
+    assertFalse(limiter.tryAcquire(HOT, null, 0));
+    assertTrue(limiter.tryAcquire(RARE, null, 0));
+  }
+
+  @Test
+  public void queriesWithInlinedValuesShareBudget() {
+    SpanRateLimiter limiter = new SpanRateLimiter(1, 0, NONE, fingerprints, MAXIMUM, 0);
+
+    assertTrue(limiter.tryAcquire("SELECT * FROM test.book WHERE id = 1", null, 0));
+    assertFalse(limiter.tryAcquire("SELECT * FROM test.book WHERE id = 2", null, 1));
+    assertFalse(limiter.tryAcquire("SELECT *  FROM test.book WHERE id = 'x'", null, 2));
+    assertEquals(1, limiter.size());
+  }
+
+  @Test
+  public void preparedStatementsKeyedByPreparedId() {
+    SpanRateLimiter limiter = new SpanRateLimiter(1, 0, NONE, fingerprints, MAXIMUM, 0);
+
+    assertTrue(limiter.tryAcquire(HOT, "a1", 0));
+    assertFalse(limiter.tryAcquire(HOT, "a1", 1));
+    // same query prepared in another keyspace
+    assertTrue(limiter.tryAcquire(HOT, "b2", 2));
+    assertTrue(limiter.tryAcquire(HOT, null, 3));
+  }
+
+  @Test
+  public void evictsFullBuckets() {
+    SpanRateLimiter limiter = new SpanRateLimiter(1, 0, NONE, fingerprints, 2, 0);
+
+    assertTrue(limiter.tryAcquire(HOT, "1", 0));
+    assertTrue(limiter.tryAcquire(HOT, "2", 0));
+    // beyond the bound, new queries share a budget
+    assertTrue(limiter.tryAcquire(HOT, "3", 0));
+    assertFalse(limiter.tryAcquire(HOT, "4", 1));
+    assertFalse(limiter.tryAcquire(HOT, "1", 2));
+    assertEquals(2, limiter.size());
+
+    // a hot query keeps its bucket while the others filled up again
+    assertTrue(limiter.tryAcquire(HOT, "1", SECOND));
+    assertFalse(limiter.tryAcquire(HOT, "1", SECOND));
+    assertTrue(limiter.tryAcquire(HOT, "5", SECOND + SECOND / 2));
+    assertEquals(2, limiter.size());
+    assertFalse(limiter.tryAcquire(HOT, "1", SECOND + SECOND / 2));
+  }
+}
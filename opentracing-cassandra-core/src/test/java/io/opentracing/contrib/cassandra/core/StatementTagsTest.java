@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class StatementTagsTest {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+  @Test
+  public void truncatesKeepingHeadAndTail() {
+    assertEquals("SELECT", StatementTags.truncate("SELECT", 6));
+    String insert = "INSERT INTO t (a, b) VALUES (?, ?)";
+    assertEquals("INSERT...(?, ?)", StatementTags.truncate(insert, 15));
+    assertEquals(15, StatementTags.truncate(insert, 15).length());
+    assertEquals("IN", StatementTags.truncate("INSERT", 2));
+  }
+
+  @Test
+  public void sendsStatementsOncePerWindow() {
+    StatementTags statementTags = new StatementTags(false, Integer.MAX_VALUE, MINUTE,
+        new CqlFingerprints(0));
+
+    assertTrue(statementTags.firstInWindow("a", 0));
+    assertFalse(statementTags.firstInWindow("a", 1));
+    // other statements have their own window
+    assertTrue(statementTags.firstInWindow("b", 2));
+    assertFalse(statementTags.firstInWindow("a", MINUTE - 1));
+    assertTrue(statementTags.firstInWindow("a", MINUTE));
+    assertFalse(statementTags.firstInWindow("a", MINUTE + 1));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class CachingQuerySpanNameProviderTest {
+
+  @Test
+  public void cachingQuerySpanNameTest() {
+    CountingSpanName counting = new CountingSpanName();
+    CachingQuerySpanNameProvider querySpanNameProvider = CachingQuerySpanNameProvider.newBuilder()
+        .build(counting);
+
+    assertEquals("Cassandra.SELECT - test.table_name",
+        querySpanNameProvider.querySpanName("SELECT * FROM test.table_name;"));
+    assertEquals("Cassandra.SELECT - test.table_name",
+        querySpanNameProvider.querySpanName("SELECT * FROM test.table_name;"));
+    assertEquals("Cassandra.INSERT - test.table_name",
+        querySpanNameProvider.querySpanName("INSERT INTO test.table_name;"));
+
+    assertEquals(2, counting.calls.get());
+    assertEquals(2, querySpanNameProvider.missCount());
+    assertEquals(1, querySpanNameProvider.hitCount());
+    assertEquals(2, querySpanNameProvider.size());
+
+    assertEquals("Cassandra", querySpanNameProvider.querySpanName(null));
+    assertEquals(2, querySpanNameProvider.size());
+  }
+
+  @Test
+  public void maximumSizeTest() {
+    CachingQuerySpanNameProvider querySpanNameProvider = CachingQuerySpanNameProvider.newBuilder()
+        .withMaximumSize(10)
+        .build(QueryMethodTableSpanName.newBuilder().build());
+
+    for (int i = 0; i < 100; i++) {
+      querySpanNameProvider.querySpanName("SELECT * FROM test.table_" + i + ";");
+    }
+
+    assertEquals(10, querySpanNameProvider.size());
+    assertEquals(90, querySpanNameProvider.evictionCount());
+  }
+
+  @Test
+  public void maximumWeightTest() {
+    CachingQuerySpanNameProvider querySpanNameProvider = CachingQuerySpanNameProvider.newBuilder()
+        .withMaximumWeight(100)
+        .build(FullQuerySpanName.newBuilder().build());
+
+    for (int i = 0; i < 100; i++) {
+      querySpanNameProvider.querySpanName("SELECT * FROM test.table_" + i + ";");
+    }
+    assertTrue(querySpanNameProvider.weight() <= 100);
+
+    // heavier than the whole cache, never stored
+    StringBuilder query = new StringBuilder("SELECT * FROM test.table_name WHERE id IN (");
+    for (int i = 0; i < 100; i++) {
+      query.append(i).append(',');
+    }
+    query.append("0);");
+    assertEquals(query.toString(), querySpanNameProvider.querySpanName(query.toString()));
+    assertTrue(querySpanNameProvider.weight() <= 100);
+  }
+
+  @Test
+  public void wrapTest() {
+    QuerySpanNameProvider customStringSpanName = CustomStringSpanName.newBuilder().build();
+    assertSame(customStringSpanName, CachingQuerySpanNameProvider.wrap(customStringSpanName));
+
+    QuerySpanNameProvider wrapped = CachingQuerySpanNameProvider
+        .wrap(FullQuerySpanName.newBuilder().build());
+    assertTrue(wrapped instanceof CachingQuerySpanNameProvider);
+    assertSame(wrapped, CachingQuerySpanNameProvider.wrap(wrapped));
+  }
+
+  private static class CountingSpanName implements QuerySpanNameProvider {
+
+    private final QuerySpanNameProvider delegate = QueryMethodTableSpanName.newBuilder().build();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public String querySpanName(String query) {
+      calls.incrementAndGet();
+      return delegate.querySpanName(query);
+    }
+  }
+}
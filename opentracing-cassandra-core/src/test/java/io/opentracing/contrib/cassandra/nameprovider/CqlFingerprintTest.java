@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class CqlFingerprintTest {
+
+  @Test
+  public void literals() {
+    assertNormalized("SELECT * FROM ks.t WHERE a = ? AND b = ? AND c = ? AND d = ?",
+        "SELECT * FROM ks.t WHERE a = 'it''s' AND b = 42 AND c = -1.5e-3 AND d = true");
+    assertNormalized("INSERT INTO t (id, data, at) VALUES (?, ?, ?)",
+        "INSERT INTO t (id, data, at) "
+            + "VALUES (123e4567-e89b-12d3-a456-426614174000, 0xCAFE, $$x$$)");
+    assertNormalized("SELECT * FROM t WHERE d > ? LIMIT ?",
+        "SELECT * FROM t WHERE d > 1h30m LIMIT 10");
+  }
+
+  @Test
+  public void inLists() {
+    assertNormalized("SELECT * FROM t WHERE id IN (?)", "SELECT * FROM t WHERE id IN (1, 2, 3)");
+    assertNormalized("SELECT * FROM t WHERE id IN (?)", "SELECT * FROM t WHERE id IN (?, ?)");
+    assertNormalized("SELECT * FROM t WHERE (a, b) IN ((?, ?))",
+        "SELECT * FROM t WHERE (a, b) IN ((1, 'x'), (2, 'y'))");
+    assertNormalized("SELECT * FROM t WHERE id IN (?, :id)",
+        "SELECT * FROM t WHERE id IN (1, :id)");
+  }
+
+  @Test
+  public void collectionLiterals() {
+    assertNormalized("UPDATE t SET l = [?] WHERE id = ?",
+        "UPDATE t SET l = [1,2,3] WHERE id = 1");
+    assertNormalized("UPDATE t SET s = s + {?} WHERE id = ?",
+        "UPDATE t SET s = s + { 'a', 'b' } WHERE id = 1");
+    assertNormalized("UPDATE t SET m = {? : ?} WHERE id = ?",
+        "UPDATE t SET m = {'a':1,'b':2} WHERE id = 1");
+    assertNormalized("INSERT INTO t (id, m) VALUES (?, {? : [?]})",
+        "INSERT INTO t (id, m) VALUES (1, {'a': [1, 2], 'b': [3]})");
+    assertNormalized("UPDATE t SET l = [], m = {} WHERE id = ?",
+        "UPDATE t SET l = [ ], m = { } WHERE id = 1");
+    // user-defined type literals and mixed shapes are kept
+    assertNormalized("INSERT INTO t (id, u) VALUES (?, {name : ?, age : ?})",
+        "INSERT INTO t (id, u) VALUES (1, {name: 'x', age: 3})");
+    assertNormalized("UPDATE t SET l = [?, :x] WHERE id = ?",
+        "UPDATE t SET l = [1, :x] WHERE id = 1");
+  }
+
+  @Test
+  public void whitespaceCommentsAndOperators() {
+    assertNormalized("SELECT a FROM ks.t WHERE a >= ? AND b != ? AND c = :c",
+        "SELECT a  FROM ks . t -- comment\n WHERE a>=1 AND b!=2 /* x */ AND c=:c");
+    assertNormalized("UPDATE t SET c = c - ? WHERE id = ?",
+        "UPDATE t SET c = c - 1 WHERE id = 2");
+  }
+
+  @Test
+  public void fingerprints() {
+    CqlFingerprint first = CqlFingerprint.of("SELECT * FROM t WHERE id = 1");
+    CqlFingerprint second = CqlFingerprint.of("select * from t where id = 2");
+    assertEquals(first.getStatement(),
+        CqlFingerprint.of("SELECT * FROM t WHERE id = 2").getStatement());
+    assertEquals(first.getHash(), CqlFingerprint.of("SELECT * FROM t WHERE id=3").getHash());
+    assertNotEquals(first.getHash(), second.getHash());
+    assertEquals(16, first.getId().length());
+    assertEquals("", CqlFingerprint.of(null).getStatement());
+  }
+
+  @Test
+  public void spanName() {
+    QuerySpanNameProvider provider = NormalizedQuerySpanName.newBuilder().build();
+    assertEquals("SELECT * FROM t WHERE id = ?",
+        provider.querySpanName("SELECT * FROM t WHERE id = 42"));
+    assertEquals("N/A", provider.querySpanName(""));
+    assertEquals("N/A", provider.querySpanName(null));
+  }
+
+  private static void assertNormalized(String expected, String query) {
+    assertEquals(expected, CqlFingerprint.normalize(query));
+  }
+}
@@ -156,6 +156,32 @@ public class QueryMethodTableSpanNameTest {
         querySpanNameProvider.querySpanName("DROP    MATERIALIZED VIEW ;"));
   }
 
+  @Test
+  public void lexicalStructureTest() {
+    QuerySpanNameProvider querySpanNameProvider = QueryMethodTableSpanName.newBuilder()
+        .build();
+    // case insensitive keywords, identifiers are kept as written
+    assertEquals("Cassandra.SELECT - Test.Table_Name",
+        querySpanNameProvider.querySpanName("select * from Test.Table_Name where id = ?"));
+    // quoted identifiers
+    assertEquals("Cassandra.INSERT - Test.My \"Table\"",
+        querySpanNameProvider.querySpanName("INSERT INTO \"Test\".\"My \"\"Table\"\"\" (id)"));
+    assertEquals("Cassandra.SELECT - test.table_name",
+        querySpanNameProvider.querySpanName("SELECT \"from\" FROM test . table_name"));
+    // comments and literals
+    assertEquals("Cassandra.UPDATE - test.table_name",
+        querySpanNameProvider.querySpanName("/* FROM other */ -- DELETE\nUPDATE test.table_name"));
+    assertEquals("Cassandra.DELETE - test.table_name",
+        querySpanNameProvider.querySpanName("DELETE col['FROM x'] FROM test.table_name"));
+    // keywords only match whole words at the start of the statement
+    assertEquals("Cassandra.CREATE_TABLE - test.updates",
+        querySpanNameProvider.querySpanName("CREATE TABLE test.updates (id int, selected int)"));
+    assertEquals("Cassandra.CREATE_INDEX - test.table_name",
+        querySpanNameProvider.querySpanName("CREATE INDEX ON test.table_name (title)"));
+    assertEquals("Cassandra.BATCH", querySpanNameProvider.querySpanName(
+        "BEGIN UNLOGGED BATCH INSERT INTO test.table_name (id) VALUES (1); APPLY BATCH;"));
+  }
+
   @Test
   public void testInvalaidMethod() {
     QuerySpanNameProvider querySpanNameProvider = QueryMethodTableSpanName.newBuilder()
@@ -163,5 +189,7 @@ public class QueryMethodTableSpanNameTest {
     assertEquals("Cassandra", querySpanNameProvider.querySpanName(""));
     assertEquals("Cassandra", querySpanNameProvider.querySpanName(null));
     assertEquals("Cassandra", querySpanNameProvider.querySpanName("INVALID METHOD"));
+    assertEquals("Cassandra", querySpanNameProvider.querySpanName("BEGIN TRANSACTION"));
+    assertEquals("Cassandra", querySpanNameProvider.querySpanName("CREATE FUNCTION f"));
   }
 }
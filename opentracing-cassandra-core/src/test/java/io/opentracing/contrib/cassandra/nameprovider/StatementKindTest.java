@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.nameprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class StatementKindTest {
+
+  @Test
+  public void leadingKeyword() {
+    assertEquals("SELECT", StatementKind.of(" select * FROM test.table_name"));
+    assertEquals("INSERT", StatementKind.of("/* comment */ INSERT INTO test.table_name"));
+    assertEquals("CREATE", StatementKind.of("-- comment\nCreate TABLE test.table_name"));
+  }
+
+  @Test
+  public void noKeyword() {
+    assertNull(StatementKind.of(null));
+    assertNull(StatementKind.of(""));
+    assertNull(StatementKind.of("  ;"));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Statement;
+import io.opentracing.Span;
+import io.opentracing.contrib.cassandra.core.BatchSpanTags;
+import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
+import io.opentracing.tag.IntTag;
+import io.opentracing.tag.StringTag;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tags describing a {@link BatchStatement}, see {@link BatchSpanTags}: type, number of statements,
+ * distinct tables and distinct partitions. They are read from the prepared metadata and routing
+ * keys of the statements of the batch, which is never rendered. Tables are only known when every
+ * statement of the batch is a bound statement, the tags are left out otherwise.
+ */
+final class BatchTags {
+
+  static final IntTag BATCH_PARTITIONS = new IntTag("batch.partitions");
+  static final StringTag BATCH_STATEMENTS = new StringTag("batch.statements");
+
+  // null when the field of the batch type cannot be read
+  private static final Field BATCH_TYPE_FIELD = batchTypeField();
+
+  private BatchTags() {
+  }
+
+  /**
+   * @param spanNameProvider names the statements of the batch for the {@code batch.statements}
+   * summary, or {@code null} to leave it out
+   */
+  static void addTags(Span span, BatchStatement batch, ProtocolVersion protocolVersion,
+      CodecRegistry codecRegistry, QuerySpanNameProvider spanNameProvider) {
+    BatchStatement.Type type = batchType(batch);
+    if (type != null) {
+      BatchSpanTags.BATCH_TYPE.set(span, type.name());
+    }
+
+    Collection<Statement> statements = batch.getStatements();
+    BatchSpanTags.BATCH_SIZE.set(span, statements.size());
+
+    Set<String> tables = new HashSet<>();
+    boolean tablesKnown = true;
+    Set<Map.Entry<Object, ByteBuffer>> partitions = new HashSet<>();
+    Set<String> names = spanNameProvider == null ? null : new LinkedHashSet<String>();
+    for (Statement statement : statements) {
+      String table = null;
+      if (statement instanceof BoundStatement) {
+        ColumnDefinitions variables = ((BoundStatement) statement).preparedStatement()
+            .getVariables();
+        if (variables.size() > 0) {
+          table = variables.getKeyspace(0) + "." + variables.getTable(0);
+          tables.add(table);
+        }
+      }
+      if (table == null) {
+        tablesKnown = false;
+      }
+
+      if (protocolVersion != null) {
+        ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+        if (routingKey != null) {
+          Object partitioner = table != null ? table : statement.getKeyspace();
+          partitions.add(new SimpleImmutableEntry<>(partitioner, routingKey));
+        }
+      }
+
+      if (names != null) {
+        names.add(spanNameProvider.querySpanName(TracingSession.getQuery(statement)));
+      }
+    }
+
+    if (tablesKnown && !tables.isEmpty()) {
+      BatchSpanTags.BATCH_TABLES.set(span, tables.size());
+      BatchSpanTags.BATCH_TABLE_NAMES.set(span, BatchSpanTags.tableNames(tables));
+      if (tables.size() == 1) {
+        TracingSession.QUERY_TABLE.set(span, tables.iterator().next());
+      }
+    }
+    BATCH_PARTITIONS.set(span, partitions.size());
+    if (names != null) {
+      StringBuilder summary = new StringBuilder();
+      for (String name : names) {
+        if (summary.length() > 0) {
+          summary.append(", ");
+        }
+        summary.append(name);
+      }
+      BATCH_STATEMENTS.set(span, summary.toString());
+    }
+  }
+
+  /*
+    The driver has no getter for the type of a batch, it is read through a Field looked up once and
+    left out if the driver does not let it be read.
+   */
+  private static BatchStatement.Type batchType(BatchStatement batch) {
+    if (BATCH_TYPE_FIELD == null) {
+      return null;
+    }
+    try {
+      return (BatchStatement.Type) BATCH_TYPE_FIELD.get(batch);
+    } catch (IllegalAccessException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static Field batchTypeField() {
+    try {
+      Field field = BatchStatement.class.getDeclaredField("batchType");
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException | RuntimeException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor finishing the spans of asynchronous queries. Threads are named daemon threads
+ * that are started on demand and stop after a minute of inactivity. When both the threads and the
+ * queue are busy, or after shutdown, tasks are handled according to the {@link RejectionPolicy}.
+ */
+public class CompletionExecutor extends ThreadPoolExecutor {
+
+  static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+  private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+  private final LongAdder rejectedCount;
+
+  /**
+   * What to do with a span completion that cannot be queued.
+   */
+  public enum RejectionPolicy {
+    /**
+     * Finish the span inline on the thread that completed the query.
+     */
+    FINISH_INLINE,
+    /**
+     * Drop the span without finishing it.
+     */
+    DISCARD
+  }
+
+  public static class Builder {
+
+    private int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.FINISH_INLINE;
+
+    // Defaults to the number of available processors, at least 2
+    public Builder withThreads(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("threads must be positive: " + threads);
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    // Defaults to 10000
+    public Builder withQueueCapacity(int queueCapacity) {
+      if (queueCapacity < 1) {
+        throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+      }
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    // Defaults to RejectionPolicy.FINISH_INLINE
+    public Builder withRejectionPolicy(RejectionPolicy rejectionPolicy) {
+      if (rejectionPolicy == null) {
+        throw new NullPointerException("rejectionPolicy");
+      }
+      this.rejectionPolicy = rejectionPolicy;
+      return this;
+    }
+
+    public CompletionExecutor build() {
+      return new CompletionExecutor(threads, queueCapacity,
+          new CountingRejectionHandler(rejectionPolicy));
+    }
+  }
+
+  private CompletionExecutor(int threads, int queueCapacity, CountingRejectionHandler handler) {
+    super(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+        new DaemonThreadFactory(), handler);
+    allowCoreThreadTimeOut(true);
+    this.rejectedCount = handler.rejectedCount;
+  }
+
+  /**
+   * @return number of span completions waiting for a thread
+   */
+  public int getQueueDepth() {
+    return getQueue().size();
+  }
+
+  /**
+   * @return number of span completions that could not be queued
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  private static class CountingRejectionHandler implements RejectedExecutionHandler {
+
+    private final RejectionPolicy rejectionPolicy;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    CountingRejectionHandler(RejectionPolicy rejectionPolicy) {
+      this.rejectionPolicy = rejectionPolicy;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      rejectedCount.increment();
+      if (rejectionPolicy == RejectionPolicy.FINISH_INLINE) {
+        task.run();
+      }
+    }
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+
+    private final String namePrefix =
+        "cassandra-tracing-" + POOL_NUMBER.incrementAndGet() + "-thread-";
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+/**
+ * Thread on which spans of asynchronous queries are finished.
+ */
+public enum CompletionMode {
+  /**
+   * Spans are finished on the executor given to {@link TracingCluster} or {@link TracingSession}.
+   * Use it for tracers that may block when a span is finished.
+   */
+  EXECUTOR,
+  /**
+   * Spans are finished inline on the driver thread that completes the query, avoiding a thread
+   * handoff per query. The tracer must not block when a span is finished.
+   */
+  DIRECT
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps error logs cheap when many queries fail the same way. Stack traces are fingerprinted by
+ * exception types and frames, the frames of each fingerprint are rendered once, and the stack is
+ * only attached to the first occurrences of a fingerprint in every time window. Every error log
+ * carries the fingerprint id, so errors logged without a stack can be matched with one that has
+ * it.
+ */
+class ErrorStackTraces {
+
+  static final String FINGERPRINT = "error.fingerprint";
+  static final String STACK = "stack";
+
+  private static final int MAXIMUM_FINGERPRINTS = 1024;
+  private static final int MAXIMUM_CAUSES = 8;
+
+  private final ConcurrentMap<Long, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+  private final int stacksPerWindow;
+  private final long windowNanos;
+
+  ErrorStackTraces(int stacksPerWindow, long windowNanos) {
+    this.stacksPerWindow = stacksPerWindow;
+    this.windowNanos = windowNanos;
+  }
+
+  void addLogs(Map<String, Object> errorLogs, Throwable throwable) {
+    addLogs(errorLogs, throwable, System.nanoTime());
+  }
+
+  void addLogs(Map<String, Object> errorLogs, Throwable throwable, long nowNanos) {
+    Fingerprint fingerprint = fingerprint(throwable, nowNanos);
+    errorLogs.put(FINGERPRINT, fingerprint.id);
+    if (fingerprint.tryAcquire(nowNanos)) {
+      errorLogs.put(STACK, fingerprint.stack(throwable));
+    }
+  }
+
+  int size() {
+    return fingerprints.size();
+  }
+
+  private Fingerprint fingerprint(Throwable throwable, long nowNanos) {
+    Long hash = hash(throwable);
+    Fingerprint fingerprint = fingerprints.get(hash);
+    if (fingerprint == null) {
+      if (fingerprints.size() >= MAXIMUM_FINGERPRINTS) {
+        // distinct stacks are few in practice, starting over keeps the map bounded
+        fingerprints.clear();
+      }
+      fingerprint = new Fingerprint(hash, nowNanos);
+      Fingerprint existing = fingerprints.putIfAbsent(hash, fingerprint);
+      if (existing != null) {
+        fingerprint = existing;
+      }
+    }
+    return fingerprint;
+  }
+
+  /*
+    Hashes exception types and stack frames of the throwable and its causes. Messages are left
+    out, they usually differ between occurrences of the same error.
+   */
+  static long hash(Throwable throwable) {
+    long hash = 1125899906842597L;
+    Throwable current = throwable;
+    for (int depth = 0; current != null && depth < MAXIMUM_CAUSES; depth++) {
+      hash = 31 * hash + current.getClass().getName().hashCode();
+      for (StackTraceElement element : current.getStackTrace()) {
+        hash = 31 * hash + element.hashCode();
+      }
+      current = current.getCause();
+    }
+    return hash;
+  }
+
+  private class Fingerprint {
+
+    private final String id;
+    private final AtomicLong windowStart;
+    private final AtomicInteger count = new AtomicInteger();
+    // frames of the throwable and of each of its causes
+    private volatile String[] frames;
+
+    Fingerprint(long hash, long nowNanos) {
+      this.id = Long.toHexString(hash);
+      this.windowStart = new AtomicLong(nowNanos);
+    }
+
+    boolean tryAcquire(long nowNanos) {
+      long start = windowStart.get();
+      if (nowNanos - start >= windowNanos && windowStart.compareAndSet(start, nowNanos)) {
+        count.set(0);
+      }
+      // checked first so the counter stays put once the window is used up
+      return count.get() < stacksPerWindow && count.incrementAndGet() <= stacksPerWindow;
+    }
+
+    /*
+      Messages differ between occurrences of a fingerprint, so only the frames are cached and the
+      headers are rendered from the given throwable.
+     */
+    String stack(Throwable throwable) {
+      String[] frames = this.frames;
+      if (frames == null) {
+        frames = frames(throwable);
+        this.frames = frames;
+      }
+      StringBuilder stack = new StringBuilder();
+      Throwable current = throwable;
+      for (int depth = 0; current != null && depth < frames.length; depth++) {
+        if (depth > 0) {
+          stack.append("Caused by: ");
+        }
+        stack.append(current).append(System.lineSeparator()).append(frames[depth]);
+        current = current.getCause();
+      }
+      return stack.toString();
+    }
+  }
+
+  private static String[] frames(Throwable throwable) {
+    int causes = 0;
+    for (Throwable current = throwable; current != null && causes < MAXIMUM_CAUSES;
+        current = current.getCause()) {
+      causes++;
+    }
+    String[] frames = new String[causes];
+    Throwable current = throwable;
+    for (int depth = 0; depth < causes; depth++) {
+      StringBuilder sb = new StringBuilder();
+      for (StackTraceElement element : current.getStackTrace()) {
+        sb.append("\tat ").append(element).append(System.lineSeparator());
+      }
+      frames[depth] = sb.toString();
+      current = current.getCause();
+    }
+    return frames;
+  }
+}
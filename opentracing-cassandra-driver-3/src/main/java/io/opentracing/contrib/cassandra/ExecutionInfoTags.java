@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.ResultSet;
+import io.opentracing.Span;
+import io.opentracing.tag.BooleanTag;
+import io.opentracing.tag.IntTag;
+import io.opentracing.tag.StringTag;
+import java.util.List;
+
+/**
+ * Tags describing how a query was executed, read from its {@link ExecutionInfo} when its span is
+ * finished. Tags are only added when the execution deviated from a single plain attempt: the query
+ * was retried on other hosts, speculatively executed, or its consistency was downgraded. Pages
+ * left to fetch are flagged too.
+ */
+final class ExecutionInfoTags {
+
+  static final StringTag TRIED_HOSTS = new StringTag("cassandra.tried_hosts");
+  static final IntTag SPECULATIVE_EXECUTIONS = new IntTag("cassandra.speculative_executions");
+  static final IntTag SUCCESSFUL_EXECUTION_INDEX =
+      new IntTag("cassandra.successful_execution_index");
+  static final StringTag ACHIEVED_CONSISTENCY_LEVEL = new StringTag("query.achieved_cl");
+  static final BooleanTag MORE_PAGES = new BooleanTag("cassandra.more_pages");
+
+  private ExecutionInfoTags() {
+  }
+
+  static void addTags(Span span, ResultSet resultSet, PeerTagsRegistry peerTagsRegistry) {
+    ExecutionInfo executionInfo = resultSet.getExecutionInfo();
+    List<Host> triedHosts = executionInfo.getTriedHosts();
+    if (triedHosts.size() > 1) {
+      StringBuilder hosts = new StringBuilder();
+      for (Host host : triedHosts) {
+        if (hosts.length() > 0) {
+          hosts.append(',');
+        }
+        hosts.append(peerTagsRegistry.get(host).getPeer());
+      }
+      TRIED_HOSTS.set(span, hosts.toString());
+    }
+    int speculativeExecutions = executionInfo.getSpeculativeExecutions();
+    if (speculativeExecutions > 0) {
+      SPECULATIVE_EXECUTIONS.set(span, speculativeExecutions);
+      SUCCESSFUL_EXECUTION_INDEX.set(span, executionInfo.getSuccessfulExecutionIndex());
+    }
+    // only set when the retry policy downgraded the consistency
+    ConsistencyLevel achievedConsistencyLevel = executionInfo.getAchievedConsistencyLevel();
+    if (achievedConsistencyLevel != null) {
+      ACHIEVED_CONSISTENCY_LEVEL.set(span, achievedConsistencyLevel.name());
+    }
+    if (!resultSet.isFullyFetched()) {
+      MORE_PAGES.set(span, Boolean.TRUE);
+    }
+  }
+}
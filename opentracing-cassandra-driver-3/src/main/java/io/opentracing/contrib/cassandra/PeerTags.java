@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.Host;
+import io.opentracing.Span;
+import io.opentracing.tag.StringTag;
+import io.opentracing.tag.Tags;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Immutable, precomputed peer tags of a {@link Host}.
+ */
+final class PeerTags {
+
+  static final StringTag PEER_DATACENTER = new StringTag("peer.datacenter");
+  static final StringTag PEER_RACK = new StringTag("peer.rack");
+
+  private final String hostname;
+  private final String address;
+  private final boolean ipv4;
+  private final Integer port;
+  private final String datacenter;
+  private final String rack;
+  private final String peer;
+  // true when hostname is an address literal that may still be resolved to a name
+  private final boolean unresolved;
+
+  private PeerTags(String hostname, String address, boolean ipv4, Integer port, String datacenter,
+      String rack, boolean unresolved) {
+    this.hostname = hostname;
+    this.address = address;
+    this.ipv4 = ipv4;
+    this.port = port;
+    this.datacenter = datacenter;
+    this.rack = rack;
+    this.unresolved = unresolved;
+    this.peer = address + ":" + port;
+  }
+
+  /**
+   * Computes the tags of a host without any DNS lookup. When the endpoint address carries no
+   * hostname, the address literal is used as hostname until it is resolved.
+   */
+  static PeerTags of(Host host) {
+    InetSocketAddress socketAddress = host.getEndPoint().resolve();
+    InetAddress inetAddress = socketAddress.getAddress();
+    String address = inetAddress == null ? socketAddress.getHostString()
+        : inetAddress.getHostAddress();
+    String hostString = socketAddress.getHostString();
+    return new PeerTags(hostString, address, inetAddress instanceof Inet4Address,
+        socketAddress.getPort(), host.getDatacenter(), host.getRack(),
+        inetAddress != null && hostString.equals(address));
+  }
+
+  PeerTags withHostname(String hostname) {
+    return new PeerTags(hostname, address, ipv4, port, datacenter, rack, false);
+  }
+
+  /**
+   * @return address and port of the host, stable while its hostname is resolved
+   */
+  String getPeer() {
+    return peer;
+  }
+
+  boolean isUnresolved() {
+    return unresolved;
+  }
+
+  boolean isCurrent(Host host) {
+    return equal(datacenter, host.getDatacenter()) && equal(rack, host.getRack());
+  }
+
+  void addTags(Span span) {
+    Tags.PEER_PORT.set(span, port);
+    Tags.PEER_HOSTNAME.set(span, hostname);
+    if (ipv4) {
+      Tags.PEER_HOST_IPV4.set(span, address);
+    } else {
+      Tags.PEER_HOST_IPV6.set(span, address);
+    }
+    if (datacenter != null) {
+      PEER_DATACENTER.set(span, datacenter);
+    }
+    if (rack != null) {
+      PEER_RACK.set(span, rack);
+    }
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
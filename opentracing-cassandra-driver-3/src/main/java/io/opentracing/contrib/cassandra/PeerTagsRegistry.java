@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Precomputed {@link PeerTags} keyed by {@link Host}, so finishing a span never triggers a DNS
+ * lookup nor formats addresses. Registered as a host state listener to follow topology changes, by
+ * {@link TracingCluster} or by a {@link TracingSession} created on its own while it is open; hosts
+ * that are not known yet are added on first use. Hostnames are resolved in the background.
+ */
+class PeerTagsRegistry implements Host.StateListener {
+
+  private final ConcurrentMap<Host, PeerTags> peers = new ConcurrentHashMap<>();
+
+  PeerTags get(Host host) {
+    PeerTags peerTags = peers.get(host);
+    if (peerTags == null) {
+      peerTags = refresh(host);
+    }
+    return peerTags;
+  }
+
+  private PeerTags refresh(final Host host) {
+    final PeerTags peerTags = PeerTags.of(host);
+    peers.put(host, peerTags);
+    if (peerTags.isUnresolved()) {
+      Resolver.EXECUTOR.execute(new Runnable() {
+        @Override
+        public void run() {
+          String hostname = host.getEndPoint().resolve().getAddress().getHostName();
+          peers.replace(host, peerTags, peerTags.withHostname(hostname));
+        }
+      });
+    }
+    return peerTags;
+  }
+
+  @Override
+  public void onAdd(Host host) {
+    refresh(host);
+  }
+
+  @Override
+  public void onUp(Host host) {
+    PeerTags peerTags = peers.get(host);
+    if (peerTags == null || !peerTags.isCurrent(host)) {
+      refresh(host);
+    }
+  }
+
+  @Override
+  public void onDown(Host host) {
+  }
+
+  @Override
+  public void onRemove(Host host) {
+    peers.remove(host);
+  }
+
+  @Override
+  public void onRegister(Cluster cluster) {
+  }
+
+  @Override
+  public void onUnregister(Cluster cluster) {
+    peers.clear();
+  }
+
+  /**
+   * Single daemon thread doing the reverse lookups, started on demand. Lookups that do not fit in
+   * the queue are dropped, the address literal is kept as hostname then.
+   */
+  private static class Resolver {
+
+    private static final ThreadPoolExecutor EXECUTOR = newExecutor();
+
+    private static ThreadPoolExecutor newExecutor() {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<Runnable>(1024), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "cassandra-tracing-resolver");
+              thread.setDaemon(true);
+              return thread;
+            }
+          }, new ThreadPoolExecutor.DiscardPolicy());
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.PreparedStatement;
+import io.opentracing.Span;
+import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
+import io.opentracing.contrib.cassandra.nameprovider.StatementKind;
+import io.opentracing.tag.StringTag;
+import io.opentracing.tag.Tags;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Immutable tag values of a prepared statement, computed once when it is prepared so executing its
+ * bound statements does no string work: span name, keyspace, table, statement kind and query
+ * digest.
+ */
+final class PreparedStatementTags {
+
+  static final StringTag QUERY_KIND = new StringTag("query.kind");
+  static final StringTag QUERY_DIGEST = new StringTag("cassandra.query_digest");
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  final String query;
+  final String spanName;
+  final String table;
+  final String queryDigest;
+  private final String keyspace;
+  private final String kind;
+
+  PreparedStatementTags(PreparedStatement statement, QuerySpanNameProvider spanNameProvider) {
+    String query = statement.getQueryString();
+    this.query = query == null ? "" : query;
+    this.spanName = spanNameProvider.querySpanName(this.query);
+
+    ColumnDefinitions variables = statement.getVariables();
+    if (variables.size() > 0) {
+      this.keyspace = variables.getKeyspace(0);
+      this.table = keyspace + "." + variables.getTable(0);
+    } else {
+      this.keyspace = statement.getQueryKeyspace();
+      this.table = null;
+    }
+    this.kind = StatementKind.of(this.query);
+    this.queryDigest = queryDigest(statement.getQueryKeyspace(), this.query);
+  }
+
+  void addTags(Span span) {
+    if (keyspace != null) {
+      Tags.DB_INSTANCE.set(span, keyspace);
+    }
+    if (table != null) {
+      TracingSession.QUERY_TABLE.set(span, table);
+    }
+    if (kind != null) {
+      QUERY_KIND.set(span, kind);
+    }
+    if (queryDigest != null) {
+      QUERY_DIGEST.set(span, queryDigest);
+    }
+  }
+
+  /*
+    MD5 digest of the keyspace the statement was prepared in and of the query string, what Cassandra
+    derives its prepared id from. The driver keeps the prepared id itself out of its public API.
+   */
+  private static String queryDigest(String keyspace, String query) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+    if (keyspace != null) {
+      digest.update(keyspace.getBytes(StandardCharsets.UTF_8));
+    }
+    byte[] bytes = digest.digest(query.getBytes(StandardCharsets.UTF_8));
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+      hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+    }
+    return new String(hex);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.QueryOptions;
+import com.datastax.driver.core.Statement;
+import io.opentracing.Span;
+
+/**
+ * Immutable snapshot of the tag values derived from the cluster {@link QueryOptions}. Values are
+ * boxed once when the snapshot is taken, so tagging a span does not go through the driver
+ * configuration.
+ */
+final class QueryOptionsTags {
+
+  private final ConsistencyLevel consistencyLevel;
+  private final boolean consistencySet;
+  private final int fetchSize;
+  private final boolean idempotence;
+
+  private final String consistencyLevelName;
+  private final Integer fetchSizeValue;
+  private final Boolean idempotenceValue;
+
+  QueryOptionsTags(QueryOptions queryOptions) {
+    this.consistencyLevel = queryOptions.getConsistencyLevel();
+    this.consistencySet = queryOptions.isConsistencySet();
+    this.fetchSize = queryOptions.getFetchSize();
+    this.idempotence = queryOptions.getDefaultIdempotence();
+    this.consistencyLevelName = consistencyLevel == null ? null : consistencyLevel.name();
+    this.fetchSizeValue = fetchSize;
+    this.idempotenceValue = idempotence;
+  }
+
+  /**
+   * @return {@code true} if the query options still hold the values of this snapshot
+   */
+  boolean isCurrent(QueryOptions queryOptions) {
+    return queryOptions.getConsistencyLevel() == consistencyLevel
+        && queryOptions.isConsistencySet() == consistencySet
+        && queryOptions.getFetchSize() == fetchSize
+        && queryOptions.getDefaultIdempotence() == idempotence;
+  }
+
+  void addTags(Span span) {
+    if (consistencyLevelName != null) {
+      TracingSession.QUERY_CONSISTENCY_LEVEL.set(span, consistencyLevelName);
+    }
+    TracingSession.QUERY_FETCH_SIZE.set(span, fetchSizeValue);
+    TracingSession.QUERY_IDEMPOTENCE.set(span, idempotenceValue);
+  }
+
+  /**
+   * Adds the tags of the statement, falling back to the snapshot for values the statement does not
+   * set.
+   */
+  void addTags(Span span, Statement statement) {
+    ConsistencyLevel cl = statement.getConsistencyLevel();
+    if (cl != null) {
+      TracingSession.QUERY_CONSISTENCY_LEVEL.set(span, cl.name());
+    } else if (consistencySet && consistencyLevelName != null) {
+      TracingSession.QUERY_CONSISTENCY_LEVEL.set(span, consistencyLevelName);
+    }
+
+    int statementFetchSize = statement.getFetchSize();
+    TracingSession.QUERY_FETCH_SIZE.set(span,
+        statementFetchSize == 0 || statementFetchSize == fetchSize
+            ? fetchSizeValue : Integer.valueOf(statementFetchSize));
+
+    Boolean statementIdempotence = statement.isIdempotent();
+    TracingSession.QUERY_IDEMPOTENCE.set(span,
+        statementIdempotence != null ? statementIdempotence : idempotenceValue);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.Statement;
+import io.opentracing.SpanContext;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cheap record of a query submitted in slow query mode, its span is only created once the query
+ * turned out slow or failed. See {@link TracingOptions.Builder#withSlowQueryThreshold(long,
+ * TimeUnit)}.
+ */
+final class SlowQuery {
+
+  // null for query strings
+  final Statement statement;
+  final String query;
+  final long startNanos;
+  // span active when the query was submitted
+  final SpanContext parent;
+
+  SlowQuery(Statement statement, String query, long startNanos, SpanContext parent) {
+    this.statement = statement;
+    this.query = query;
+    this.startNanos = startNanos;
+    this.parent = parent;
+  }
+
+  long elapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+
+  /*
+    Submission time of the query on the clock of the tracers.
+   */
+  long startMicros() {
+    return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis())
+        - TimeUnit.NANOSECONDS.toMicros(elapsedNanos());
+  }
+}
@@ -13,6 +13,7 @@
  */
 package io.opentracing.contrib.cassandra;
 
+import com.datastax.driver.core.CloseFuture;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.GuavaCompatibility;
 import com.datastax.driver.core.Session;
@@ -20,10 +21,11 @@ import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.opentracing.Tracer;
+import io.opentracing.contrib.cassandra.core.LatencyHistograms;
+import io.opentracing.contrib.cassandra.nameprovider.CachingQuerySpanNameProvider;
 import io.opentracing.contrib.cassandra.nameprovider.CustomStringSpanName;
 import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Tracing decorator for {@link Cluster}
@@ -33,6 +35,9 @@ public class TracingCluster extends Cluster {
   private final Tracer tracer;
   private final QuerySpanNameProvider querySpanNameProvider;
   private final ExecutorService executorService;
+  private final TracingOptions options;
+  private final boolean ownsExecutor;
+  private final TracingState state;
 
   public TracingCluster(Initializer initializer, Tracer tracer) {
     this(initializer, tracer, CustomStringSpanName.newBuilder().build("execute"));
@@ -40,16 +45,62 @@ public class TracingCluster extends Cluster {
 
   public TracingCluster(Initializer initializer, Tracer tracer,
       QuerySpanNameProvider querySpanNameProvider) {
-    this(initializer, tracer, querySpanNameProvider, Executors.newCachedThreadPool());
+    this(initializer, tracer, querySpanNameProvider, TracingOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a cluster owning a {@link CompletionExecutor} with default settings, shut down when
+   * the cluster is closed.
+   */
+  public TracingCluster(Initializer initializer, Tracer tracer,
+      QuerySpanNameProvider querySpanNameProvider, TracingOptions options) {
+    this(initializer, tracer, querySpanNameProvider, CompletionExecutor.newBuilder().build(),
+        options, true);
   }
 
   public TracingCluster(Initializer initializer, Tracer tracer,
       QuerySpanNameProvider querySpanNameProvider,
       ExecutorService executorService) {
+    this(initializer, tracer, querySpanNameProvider, executorService, TracingOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a cluster finishing spans on the given executor. The executor is not shut down when
+   * the cluster is closed.
+   */
+  public TracingCluster(Initializer initializer, Tracer tracer,
+      QuerySpanNameProvider querySpanNameProvider,
+      ExecutorService executorService, TracingOptions options) {
+    this(initializer, tracer, querySpanNameProvider, executorService, options, false);
+  }
+
+  private TracingCluster(Initializer initializer, Tracer tracer,
+      QuerySpanNameProvider querySpanNameProvider,
+      ExecutorService executorService, TracingOptions options, boolean ownsExecutor) {
     super(initializer);
     this.tracer = tracer;
-    this.querySpanNameProvider = querySpanNameProvider;
+    this.querySpanNameProvider = CachingQuerySpanNameProvider.wrap(querySpanNameProvider);
     this.executorService = executorService;
+    this.options = options;
+    this.ownsExecutor = ownsExecutor;
+    this.state = new TracingState(options);
+    register(state.peerTagsRegistry);
+  }
+
+  /**
+   * @return executor finishing the spans of asynchronous queries, shared by all sessions of this
+   * cluster
+   */
+  public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
+  /**
+   * @return latencies of the queries of all sessions of this cluster, null unless enabled with
+   * {@link TracingOptions.Builder#withLatencyHistograms(boolean)}
+   */
+  public LatencyHistograms getLatencyHistograms() {
+    return state.latencyHistograms;
   }
 
   /**
@@ -57,7 +108,7 @@ public class TracingCluster extends Cluster {
    */
   @Override
   public Session newSession() {
-    return new TracingSession(super.newSession(), tracer, querySpanNameProvider, executorService);
+    return newTracingSession(super.newSession());
   }
 
   /**
@@ -97,7 +148,7 @@ public class TracingCluster extends Cluster {
           .transform(super.connectAsync(keyspace), new Function<Session, Session>() {
             @Override
             public Session apply(Session session) {
-              return new TracingSession(session, tracer, querySpanNameProvider, executorService);
+              return newTracingSession(session);
             }
           });
     } else {
@@ -105,9 +156,31 @@ public class TracingCluster extends Cluster {
           .transform(super.connectAsync(keyspace), new Function<Session, Session>() {
             @Override
             public Session apply(Session session) {
-              return new TracingSession(session, tracer, querySpanNameProvider, executorService);
+              return newTracingSession(session);
             }
           });
     }
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CloseFuture closeAsync() {
+    CloseFuture closeFuture = super.closeAsync();
+    if (ownsExecutor) {
+      closeFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          executorService.shutdown();
+        }
+      }, DirectExecutor.INSTANCE);
+    }
+    return closeFuture;
+  }
+
+  private TracingSession newTracingSession(Session session) {
+    return new TracingSession(session, tracer, querySpanNameProvider, executorService, options,
+        false, state);
+  }
 }
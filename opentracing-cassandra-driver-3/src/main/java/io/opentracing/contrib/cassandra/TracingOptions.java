@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import io.opentracing.contrib.cassandra.core.AbstractTracingOptions;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning options shared by {@link TracingCluster} and the sessions it creates.
+ */
+public class TracingOptions extends AbstractTracingOptions {
+
+  static final TracingOptions DEFAULT = newBuilder().build();
+
+  private final CompletionMode completionMode;
+  private final int errorStacksPerWindow;
+  private final long errorStackWindowNanos;
+  private final int maxErrorStatementLength;
+  private final boolean pagingSpans;
+  private final boolean batchSummary;
+  private final boolean prepareSpans;
+  private final long slowQueryThresholdNanos;
+  private final Map<String, Long> slowQueryTableThresholdNanos;
+
+  public static class Builder extends AbstractTracingOptions.Builder<Builder> {
+
+    private CompletionMode completionMode = CompletionMode.EXECUTOR;
+    private int errorStacksPerWindow = 10;
+    private long errorStackWindowNanos = TimeUnit.MINUTES.toNanos(1);
+    private int maxErrorStatementLength = 1024;
+    private boolean pagingSpans;
+    private boolean batchSummary;
+    private boolean prepareSpans;
+    private long slowQueryThresholdNanos = Long.MAX_VALUE;
+    private final Map<String, Long> slowQueryTableThresholdNanos = new HashMap<>();
+
+    @Override
+    protected Builder self() {
+      return this;
+    }
+
+    // Defaults to CompletionMode.EXECUTOR
+    public Builder withCompletionMode(CompletionMode completionMode) {
+      if (completionMode == null) {
+        throw new NullPointerException("completionMode");
+      }
+      this.completionMode = completionMode;
+      return this;
+    }
+
+    /**
+     * Limits the error logs carrying a stack trace to the first {@code stacksPerWindow}
+     * occurrences of the same stack trace in every window. Other error logs only carry the
+     * fingerprint of the stack trace. Defaults to 10 per minute.
+     */
+    public Builder withErrorStackLimit(int stacksPerWindow, long window, TimeUnit unit) {
+      if (stacksPerWindow < 0) {
+        throw new IllegalArgumentException("stacksPerWindow must not be negative");
+      }
+      if (window <= 0) {
+        throw new IllegalArgumentException("window must be positive");
+      }
+      this.errorStacksPerWindow = stacksPerWindow;
+      this.errorStackWindowNanos = unit.toNanos(window);
+      return this;
+    }
+
+    // Defaults to 1024 characters, longer statements are truncated in error logs
+    public Builder withMaxErrorStatementLength(int maxErrorStatementLength) {
+      if (maxErrorStatementLength < 0) {
+        throw new IllegalArgumentException("maxErrorStatementLength must not be negative");
+      }
+      this.maxErrorStatementLength = maxErrorStatementLength;
+      return this;
+    }
+
+    /**
+     * Traces the pages fetched after the first one, either with {@code fetchMoreResults()} or
+     * while iterating over the rows of a result set. Disabled by default.
+     */
+    public Builder withPagingSpans(boolean pagingSpans) {
+      this.pagingSpans = pagingSpans;
+      return this;
+    }
+
+    /**
+     * Tags batch spans with the distinct span names of the statements of the batch, given by the
+     * span name provider. Disabled by default.
+     */
+    public Builder withBatchSummary(boolean batchSummary) {
+      this.batchSummary = batchSummary;
+      return this;
+    }
+
+    /**
+     * Creates a span for every statement prepared by the session, tagged like the executions of
+     * the statement. Disabled by default.
+     */
+    public Builder withPrepareSpans(boolean prepareSpans) {
+      this.prepareSpans = prepareSpans;
+      return this;
+    }
+
+    /**
+     * Only creates the span of a query once it completed, when it took at least {@code threshold}
+     * or failed. Faster queries only cost a timestamp. The span is backdated to the submission of
+     * the query, the span rate limits apply to slow queries only, and pages are not traced.
+     * Disabled by default.
+     */
+    public Builder withSlowQueryThreshold(long threshold, TimeUnit unit) {
+      if (threshold < 0) {
+        throw new IllegalArgumentException("threshold must not be negative");
+      }
+      this.slowQueryThresholdNanos = unit.toNanos(threshold);
+      return this;
+    }
+
+    /**
+     * Threshold of the statements prepared on a table, given as {@code keyspace.table}, overriding
+     * the threshold of {@link #withSlowQueryThreshold(long, TimeUnit)}. Enables slow query mode
+     * too, queries on other tables are then only traced when they fail unless a global threshold
+     * is set.
+     */
+    public Builder withSlowQueryThreshold(String table, long threshold, TimeUnit unit) {
+      if (table == null) {
+        throw new NullPointerException("table");
+      }
+      if (threshold < 0) {
+        throw new IllegalArgumentException("threshold must not be negative");
+      }
+      this.slowQueryTableThresholdNanos.put(table, unit.toNanos(threshold));
+      return this;
+    }
+
+    public TracingOptions build() {
+      return new TracingOptions(this);
+    }
+  }
+
+  private TracingOptions(Builder builder) {
+    super(builder);
+    this.completionMode = builder.completionMode;
+    this.errorStacksPerWindow = builder.errorStacksPerWindow;
+    this.errorStackWindowNanos = builder.errorStackWindowNanos;
+    this.maxErrorStatementLength = builder.maxErrorStatementLength;
+    this.pagingSpans = builder.pagingSpans;
+    this.batchSummary = builder.batchSummary;
+    this.prepareSpans = builder.prepareSpans;
+    this.slowQueryThresholdNanos = builder.slowQueryThresholdNanos;
+    this.slowQueryTableThresholdNanos = Collections
+        .unmodifiableMap(new HashMap<>(builder.slowQueryTableThresholdNanos));
+  }
+
+  public CompletionMode getCompletionMode() {
+    return completionMode;
+  }
+
+  public int getErrorStacksPerWindow() {
+    return errorStacksPerWindow;
+  }
+
+  public long getErrorStackWindowNanos() {
+    return errorStackWindowNanos;
+  }
+
+  public int getMaxErrorStatementLength() {
+    return maxErrorStatementLength;
+  }
+
+  public boolean isPagingSpans() {
+    return pagingSpans;
+  }
+
+  public boolean isBatchSummary() {
+    return batchSummary;
+  }
+
+  public boolean isPrepareSpans() {
+    return prepareSpans;
+  }
+
+  public boolean isSlowQueries() {
+    return slowQueryThresholdNanos != Long.MAX_VALUE || !slowQueryTableThresholdNanos.isEmpty();
+  }
+
+  /**
+   * @return slow query threshold of the statements prepared on the table, or the global one
+   */
+  public long getSlowQueryThresholdNanos(String table) {
+    Long thresholdNanos = table == null ? null : slowQueryTableThresholdNanos.get(table);
+    return thresholdNanos == null ? slowQueryThresholdNanos : thresholdNanos;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedId;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.policies.RetryPolicy;
+import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Decorator for {@link PreparedStatement} carrying the {@link PreparedStatementTags} of the
+ * statement. Its bound statements refer to it, so {@link TracingSession} finds the tags from
+ * {@link BoundStatement#preparedStatement()}.
+ */
+final class TracingPreparedStatement implements PreparedStatement {
+
+  private final PreparedStatement statement;
+  final PreparedStatementTags tags;
+
+  private TracingPreparedStatement(PreparedStatement statement,
+      QuerySpanNameProvider spanNameProvider) {
+    this.statement = statement;
+    this.tags = new PreparedStatementTags(statement, spanNameProvider);
+  }
+
+  static TracingPreparedStatement wrap(PreparedStatement statement,
+      QuerySpanNameProvider spanNameProvider) {
+    if (statement instanceof TracingPreparedStatement) {
+      return (TracingPreparedStatement) statement;
+    }
+    return new TracingPreparedStatement(statement, spanNameProvider);
+  }
+
+  /**
+   * @return tags of the prepared statement of a bound statement, {@code null} if it was not
+   * prepared by a {@link TracingSession}
+   */
+  static PreparedStatementTags tags(BoundStatement statement) {
+    PreparedStatement preparedStatement = statement.preparedStatement();
+    if (preparedStatement instanceof TracingPreparedStatement) {
+      return ((TracingPreparedStatement) preparedStatement).tags;
+    }
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ColumnDefinitions getVariables() {
+    return statement.getVariables();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public BoundStatement bind(Object... values) {
+    return new BoundStatement(this).bind(values);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public BoundStatement bind() {
+    return new BoundStatement(this);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement setRoutingKey(ByteBuffer routingKey) {
+    statement.setRoutingKey(routingKey);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement setRoutingKey(ByteBuffer... routingKeyComponents) {
+    statement.setRoutingKey(routingKeyComponents);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ByteBuffer getRoutingKey() {
+    return statement.getRoutingKey();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement setConsistencyLevel(ConsistencyLevel consistency) {
+    statement.setConsistencyLevel(consistency);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ConsistencyLevel getConsistencyLevel() {
+    return statement.getConsistencyLevel();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement setSerialConsistencyLevel(ConsistencyLevel serialConsistency) {
+    statement.setSerialConsistencyLevel(serialConsistency);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ConsistencyLevel getSerialConsistencyLevel() {
+    return statement.getSerialConsistencyLevel();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getQueryString() {
+    return statement.getQueryString();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getQueryKeyspace() {
+    return statement.getQueryKeyspace();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement enableTracing() {
+    statement.enableTracing();
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement disableTracing() {
+    statement.disableTracing();
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isTracing() {
+    return statement.isTracing();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement setRetryPolicy(RetryPolicy policy) {
+    statement.setRetryPolicy(policy);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public RetryPolicy getRetryPolicy() {
+    return statement.getRetryPolicy();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedId getPreparedId() {
+    return statement.getPreparedId();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, ByteBuffer> getIncomingPayload() {
+    return statement.getIncomingPayload();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, ByteBuffer> getOutgoingPayload() {
+    return statement.getOutgoingPayload();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement setOutgoingPayload(Map<String, ByteBuffer> payload) {
+    statement.setOutgoingPayload(payload);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CodecRegistry getCodecRegistry() {
+    return statement.getCodecRegistry();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PreparedStatement setIdempotent(Boolean idempotent) {
+    statement.setIdempotent(idempotent);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Boolean isIdempotent() {
+    return statement.isIdempotent();
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.GuavaCompatibility;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link ResultSet} tracing the pages fetched after the first one, either explicitly with {@link
+ * #fetchMoreResults()} or while iterating over the rows. Every page fetch is traced by a child span
+ * of the span of the query, tagged with the time spent fetching the page and with running totals:
+ * the rows consumed before the fetch, the pages fetched and the time spent fetching them. No span
+ * is left open, so result sets that are abandoned or only partially consumed are fine. Only result
+ * sets that are not fully fetched are wrapped.
+ */
+class TracingResultSet implements ResultSet {
+
+  static final String FETCH_OPERATION_NAME = "fetchMoreResults";
+  static final String PAGE = "cassandra.page";
+  static final String ROWS = "cassandra.rows";
+  static final String PAGES = "cassandra.pages";
+  static final String FETCH_NANOS = "cassandra.fetch_ns";
+  static final String TOTAL_FETCH_NANOS = "cassandra.total_fetch_ns";
+
+  private final ResultSet resultSet;
+  private final Tracer tracer;
+  private final Span querySpan;
+  private int pages = 1;
+  private long rows;
+  // updated by the threads completing the fetches, one fetch at a time
+  private volatile long fetchNanos;
+  private ListenableFuture<ResultSet> pendingFetch;
+
+  private TracingResultSet(ResultSet resultSet, Tracer tracer, Span querySpan) {
+    this.resultSet = resultSet;
+    this.tracer = tracer;
+    this.querySpan = querySpan;
+  }
+
+  static ResultSet wrap(ResultSet resultSet, Tracer tracer, Span querySpan) {
+    if (resultSet == null || resultSet.isFullyFetched()) {
+      return resultSet;
+    }
+    return new TracingResultSet(resultSet, tracer, querySpan);
+  }
+
+  @Override
+  public ColumnDefinitions getColumnDefinitions() {
+    return resultSet.getColumnDefinitions();
+  }
+
+  @Override
+  public boolean wasApplied() {
+    return resultSet.wasApplied();
+  }
+
+  @Override
+  public boolean isExhausted() {
+    fetchIfNeeded();
+    return resultSet.isExhausted();
+  }
+
+  @Override
+  public boolean isFullyFetched() {
+    return resultSet.isFullyFetched();
+  }
+
+  @Override
+  public int getAvailableWithoutFetching() {
+    return resultSet.getAvailableWithoutFetching();
+  }
+
+  @Override
+  public ListenableFuture<ResultSet> fetchMoreResults() {
+    if (resultSet.isFullyFetched()) {
+      return resultSet.fetchMoreResults();
+    }
+    if (pendingFetch == null || pendingFetch.isDone()) {
+      pendingFetch = fetch();
+    }
+    Function<ResultSet, ResultSet> toThis = new Function<ResultSet, ResultSet>() {
+      @Override
+      public ResultSet apply(ResultSet fetched) {
+        return TracingResultSet.this;
+      }
+    };
+    if (GuavaCompatibilityUtil.isGuavaCompatibilityFound()) {
+      return GuavaCompatibility.INSTANCE.transform(pendingFetch, toThis);
+    } else {
+      return Futures.transform(pendingFetch, toThis);
+    }
+  }
+
+  @Override
+  public Row one() {
+    fetchIfNeeded();
+    Row row = resultSet.one();
+    if (row != null) {
+      rows++;
+    }
+    return row;
+  }
+
+  @Override
+  public List<Row> all() {
+    List<Row> all = new ArrayList<>(resultSet.getAvailableWithoutFetching());
+    Row row;
+    while ((row = one()) != null) {
+      all.add(row);
+    }
+    return all;
+  }
+
+  @Override
+  public Iterator<Row> iterator() {
+    return new Iterator<Row>() {
+      @Override
+      public boolean hasNext() {
+        return !isExhausted();
+      }
+
+      @Override
+      public Row next() {
+        Row row = one();
+        if (row == null) {
+          throw new NoSuchElementException();
+        }
+        return row;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public ExecutionInfo getExecutionInfo() {
+    return resultSet.getExecutionInfo();
+  }
+
+  @Override
+  public List<ExecutionInfo> getAllExecutionInfo() {
+    return resultSet.getAllExecutionInfo();
+  }
+
+  /*
+    Fetches the next page when the current one is consumed, so the wait is traced instead of
+    happening inside the wrapped result set.
+   */
+  private void fetchIfNeeded() {
+    if (resultSet.getAvailableWithoutFetching() > 0 || resultSet.isFullyFetched()) {
+      return;
+    }
+    if (pendingFetch == null || pendingFetch.isDone()) {
+      pendingFetch = fetch();
+    }
+    try {
+      Uninterruptibles.getUninterruptibly(pendingFetch);
+    } catch (ExecutionException ignore) {
+      // marked on the fetch span, the wrapped result set throws it to the caller
+    }
+  }
+
+  private ListenableFuture<ResultSet> fetch() {
+    pages++;
+    final Span fetchSpan = tracer.buildSpan(FETCH_OPERATION_NAME)
+        .asChildOf(querySpan)
+        .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+        .withTag(Tags.COMPONENT.getKey(), TracingSession.COMPONENT_NAME)
+        .withTag(Tags.DB_TYPE.getKey(), "cassandra")
+        .withTag(PAGE, pages - 1)
+        .withTag(ROWS, rows)
+        .withTag(PAGES, pages)
+        .start();
+    final long startNanos = System.nanoTime();
+    final ListenableFuture<ResultSet> future = resultSet.fetchMoreResults();
+    future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        long nanos = System.nanoTime() - startNanos;
+        fetchNanos += nanos;
+        fetchSpan.setTag(FETCH_NANOS, nanos);
+        fetchSpan.setTag(TOTAL_FETCH_NANOS, fetchNanos);
+        try {
+          Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+          Tags.ERROR.set(fetchSpan, Boolean.TRUE);
+        }
+        fetchSpan.finish();
+      }
+    }, DirectExecutor.INSTANCE);
+    return future;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link ResultSetFuture} returning a {@link TracingResultSet}, so the pages fetched after the
+ * first one are traced.
+ */
+class TracingResultSetFuture implements ResultSetFuture {
+
+  private final ResultSetFuture future;
+  private final Tracer tracer;
+  private final Span querySpan;
+  private ResultSet resultSet;
+
+  TracingResultSetFuture(ResultSetFuture future, Tracer tracer, Span querySpan) {
+    this.future = future;
+    this.tracer = tracer;
+    this.querySpan = querySpan;
+  }
+
+  @Override
+  public ResultSet getUninterruptibly() {
+    return wrap(future.getUninterruptibly());
+  }
+
+  @Override
+  public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+    return wrap(future.getUninterruptibly(timeout, unit));
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return future.cancel(mayInterruptIfRunning);
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return future.isCancelled();
+  }
+
+  @Override
+  public boolean isDone() {
+    return future.isDone();
+  }
+
+  @Override
+  public ResultSet get() throws InterruptedException, ExecutionException {
+    return wrap(future.get());
+  }
+
+  @Override
+  public ResultSet get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    return wrap(future.get(timeout, unit));
+  }
+
+  @Override
+  public void addListener(Runnable listener, Executor executor) {
+    future.addListener(listener, executor);
+  }
+
+  /*
+    Every caller gets the same result set, so every page fetch is traced once.
+   */
+  private synchronized ResultSet wrap(ResultSet resultSet) {
+    if (this.resultSet == null) {
+      this.resultSet = TracingResultSet.wrap(resultSet, tracer, querySpan);
+    }
+    return this.resultSet;
+  }
+}
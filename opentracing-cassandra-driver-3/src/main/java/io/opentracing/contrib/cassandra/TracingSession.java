@@ -13,13 +13,15 @@
  */
 package io.opentracing.contrib.cassandra;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.CloseFuture;
 import com.datastax.driver.core.Cluster;
-import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Configuration;
 import com.datastax.driver.core.GuavaCompatibility;
 import com.datastax.driver.core.Host;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.QueryOptions;
 import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
@@ -29,24 +31,23 @@ import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
+import io.opentracing.contrib.cassandra.core.LatencyHistograms;
+import io.opentracing.contrib.cassandra.core.RecordingDetector;
+import io.opentracing.contrib.cassandra.nameprovider.CachingQuerySpanNameProvider;
 import io.opentracing.contrib.cassandra.nameprovider.CustomStringSpanName;
 import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
 import io.opentracing.tag.BooleanTag;
 import io.opentracing.tag.IntTag;
 import io.opentracing.tag.StringTag;
 import io.opentracing.tag.Tags;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.net.Inet4Address;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Decorator for {@link Session} Instantiated by TracingCluster
@@ -58,11 +59,33 @@ public class TracingSession implements Session {
   static final StringTag QUERY_TABLE = new StringTag("query.table");
   static final IntTag QUERY_FETCH_SIZE = new IntTag("query.fetchSize");
   static final BooleanTag QUERY_IDEMPOTENCE = new BooleanTag("query.idempotence");
+  static final String PREPARE_OPERATION_NAME = "prepare";
+  static final BooleanTag SLOW_QUERY = new BooleanTag("cassandra.slow_query");
+  private static final int QUERY_OPTIONS_CHECK_INTERVAL = 1024;
 
   private final ExecutorService executorService;
+  private final Executor completionExecutor;
+  private final TracingOptions options;
+  private final RecordingDetector recordingDetector;
+  private final boolean pagingSpans;
+  private final boolean batchSummary;
+  private final boolean prepareSpans;
+  private final boolean ownsExecutor;
+  private final boolean ownsState;
+  private final boolean metricsOnly;
+  private final boolean slowQueries;
+  // true when a subclass adds custom tags in buildSpan(String)
+  private final boolean customSpans;
+  // true when a subclass adds custom tags in buildSpan(String, long, SpanContext)
+  private final boolean customSlowQuerySpans;
+  private final TracingState state;
   private final Session session;
   private final Tracer tracer;
   private final QuerySpanNameProvider querySpanNameProvider;
+  private volatile QueryOptions queryOptions;
+  private volatile QueryOptionsTags queryOptionsTags;
+  // racy, a lost update only moves the next check of the query options
+  private int spansSinceCheck;
 
   public TracingSession(Session session, Tracer tracer) {
     this(session, tracer, CustomStringSpanName.newBuilder().build("execute"));
@@ -70,15 +93,85 @@ public class TracingSession implements Session {
 
   public TracingSession(Session session, Tracer tracer,
       QuerySpanNameProvider querySpanNameProvider) {
-    this(session, tracer, querySpanNameProvider, Executors.newCachedThreadPool());
+    this(session, tracer, querySpanNameProvider, TracingOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a session owning a {@link CompletionExecutor} with default settings, shut down when
+   * the session is closed.
+   */
+  public TracingSession(Session session, Tracer tracer,
+      QuerySpanNameProvider querySpanNameProvider, TracingOptions options) {
+    this(session, tracer, querySpanNameProvider, CompletionExecutor.newBuilder().build(), options,
+        true, new TracingState(options), true);
   }
 
   public TracingSession(Session session, Tracer tracer, QuerySpanNameProvider querySpanNameProvider,
       ExecutorService executorService) {
+    this(session, tracer, querySpanNameProvider, executorService, TracingOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a session finishing spans on the given executor. The executor is not shut down when
+   * the session is closed.
+   */
+  public TracingSession(Session session, Tracer tracer, QuerySpanNameProvider querySpanNameProvider,
+      ExecutorService executorService, TracingOptions options) {
+    this(session, tracer, querySpanNameProvider, executorService, options, false,
+        new TracingState(options), true);
+  }
+
+  TracingSession(Session session, Tracer tracer, QuerySpanNameProvider querySpanNameProvider,
+      ExecutorService executorService, TracingOptions options, boolean ownsExecutor,
+      TracingState state) {
+    this(session, tracer, querySpanNameProvider, executorService, options, ownsExecutor, state,
+        false);
+  }
+
+  /*
+    A session that owns its state is not created by a TracingCluster, it follows the topology of
+    the cluster itself while it is open.
+   */
+  private TracingSession(Session session, Tracer tracer,
+      QuerySpanNameProvider querySpanNameProvider, ExecutorService executorService,
+      TracingOptions options, boolean ownsExecutor, TracingState state, boolean ownsState) {
     this.session = session;
     this.tracer = tracer;
-    this.querySpanNameProvider = querySpanNameProvider;
+    this.querySpanNameProvider = CachingQuerySpanNameProvider.wrap(querySpanNameProvider);
     this.executorService = executorService;
+    this.options = options;
+    this.recordingDetector = options.getRecordingDetector();
+    this.pagingSpans = options.isPagingSpans();
+    this.batchSummary = options.isBatchSummary();
+    this.prepareSpans = options.isPrepareSpans();
+    this.metricsOnly = options.isMetricsOnly();
+    this.slowQueries = options.isSlowQueries();
+    this.customSpans = overrides("buildSpan", String.class);
+    this.customSlowQuerySpans = overrides("buildSpan", String.class, long.class,
+        SpanContext.class);
+    this.ownsExecutor = ownsExecutor;
+    this.ownsState = ownsState;
+    this.state = state;
+    this.completionExecutor = options.getCompletionMode() == CompletionMode.DIRECT
+        ? DirectExecutor.INSTANCE : executorService;
+    if (ownsState) {
+      session.getCluster().register(state.peerTagsRegistry);
+    }
+  }
+
+  /**
+   * @return executor finishing the spans of asynchronous queries
+   */
+  public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
+  /**
+   * @return latencies of the queries of this session, shared with the other sessions of its
+   * cluster, null unless enabled with {@link TracingOptions.Builder#withLatencyHistograms(boolean)}
+   */
+  public LatencyHistograms getLatencyHistograms() {
+    return state.latencyHistograms;
   }
 
   /**
@@ -91,10 +184,14 @@ public class TracingSession implements Session {
 
   /**
    * {@inheritDoc}
+   *
+   * <p>The returned session shares the executor of this session and does not shut it down when
+   * closed, only this session does if it owns it.
    */
   @Override
   public Session init() {
-    return new TracingSession(session.init(), tracer, querySpanNameProvider, executorService);
+    return new TracingSession(session.init(), tracer, querySpanNameProvider, executorService,
+        options, false, state);
   }
 
   /**
@@ -107,14 +204,16 @@ public class TracingSession implements Session {
           .transform(session.initAsync(), new Function<Session, Session>() {
             @Override
             public Session apply(Session session) {
-              return new TracingSession(session, tracer);
+              return new TracingSession(session, tracer, querySpanNameProvider, executorService,
+                  options, false, state);
             }
           });
     } else {
       return Futures.transform(session.initAsync(), new Function<Session, Session>() {
         @Override
         public Session apply(Session session) {
-          return new TracingSession(session, tracer);
+          return new TracingSession(session, tracer, querySpanNameProvider, executorService,
+              options, false, state);
         }
       });
     }
@@ -125,12 +224,26 @@ public class TracingSession implements Session {
    */
   @Override
   public ResultSet execute(String query) {
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.execute(query), null, query, startNanos);
+    }
+    if (slowQueries) {
+      SlowQuery slowQuery = startSlowQuery(null, query, startNanos);
+      try {
+        return finishSlowQuery(slowQuery,
+            recordLatency(session.execute(query), null, query, startNanos));
+      } catch (Exception e) {
+        finishSlowQuery(slowQuery, e);
+        throw e;
+      }
+    }
     Span span = buildSpan(query);
     ResultSet resultSet;
     try {
-      resultSet = session.execute(query);
+      resultSet = recordLatency(session.execute(query), null, query, startNanos);
       finishSpan(span, resultSet);
-      return resultSet;
+      return tracePages(resultSet, span);
     } catch (Exception e) {
       finishSpan(span, e);
       throw e;
@@ -143,12 +256,26 @@ public class TracingSession implements Session {
    */
   @Override
   public ResultSet execute(String query, Object... values) {
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.execute(query, values), null, query, startNanos);
+    }
+    if (slowQueries) {
+      SlowQuery slowQuery = startSlowQuery(null, query, startNanos);
+      try {
+        return finishSlowQuery(slowQuery,
+            recordLatency(session.execute(query, values), null, query, startNanos));
+      } catch (Exception e) {
+        finishSlowQuery(slowQuery, e);
+        throw e;
+      }
+    }
     Span span = buildSpan(query);
     ResultSet resultSet;
     try {
-      resultSet = session.execute(query, values);
+      resultSet = recordLatency(session.execute(query, values), null, query, startNanos);
       finishSpan(span, resultSet);
-      return resultSet;
+      return tracePages(resultSet, span);
     } catch (Exception e) {
       finishSpan(span, e);
       throw e;
@@ -160,12 +287,26 @@ public class TracingSession implements Session {
    */
   @Override
   public ResultSet execute(String query, Map<String, Object> values) {
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.execute(query, values), null, query, startNanos);
+    }
+    if (slowQueries) {
+      SlowQuery slowQuery = startSlowQuery(null, query, startNanos);
+      try {
+        return finishSlowQuery(slowQuery,
+            recordLatency(session.execute(query, values), null, query, startNanos));
+      } catch (Exception e) {
+        finishSlowQuery(slowQuery, e);
+        throw e;
+      }
+    }
     Span span = buildSpan(query);
     ResultSet resultSet;
     try {
-      resultSet = session.execute(query, values);
+      resultSet = recordLatency(session.execute(query, values), null, query, startNanos);
       finishSpan(span, resultSet);
-      return resultSet;
+      return tracePages(resultSet, span);
     } catch (Exception e) {
       finishSpan(span, e);
       throw e;
@@ -178,12 +319,26 @@ public class TracingSession implements Session {
   @Override
   public ResultSet execute(Statement statement) {
     String query = getQuery(statement);
-    Span span = buildSpan(query);
+    long startNanos = startNanos();
+    if (!shouldTrace(query, queryDigest(statement))) {
+      return recordLatency(session.execute(statement), statement, query, startNanos);
+    }
+    if (slowQueries) {
+      SlowQuery slowQuery = startSlowQuery(statement, query, startNanos);
+      try {
+        return finishSlowQuery(slowQuery,
+            recordLatency(session.execute(statement), statement, query, startNanos));
+      } catch (Exception e) {
+        finishSlowQuery(slowQuery, e);
+        throw e;
+      }
+    }
+    Span span = buildSpan(statement, query, null);
     ResultSet resultSet = null;
     try {
-      resultSet = session.execute(statement);
+      resultSet = recordLatency(session.execute(statement), statement, query, startNanos);
       finishSpan(span, resultSet, statement);
-      return resultSet;
+      return tracePages(resultSet, span);
     } catch (Exception e) {
       finishSpan(span, e, statement);
       throw e;
@@ -195,11 +350,19 @@ public class TracingSession implements Session {
    */
   @Override
   public ResultSetFuture executeAsync(String query) {
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.executeAsync(query), null, query, startNanos);
+    }
+    if (slowQueries) {
+      return traceSlowQuery(recordLatency(session.executeAsync(query), null, query, startNanos),
+          startSlowQuery(null, query, startNanos));
+    }
     final Span span = buildSpan(query);
-    ResultSetFuture future = session.executeAsync(query);
-    future.addListener(createListener(span, future), executorService);
+    ResultSetFuture future = recordLatency(session.executeAsync(query), null, query, startNanos);
+    future.addListener(createListener(span, future), completionExecutor);
 
-    return future;
+    return tracePages(future, span);
   }
 
   /**
@@ -207,11 +370,21 @@ public class TracingSession implements Session {
    */
   @Override
   public ResultSetFuture executeAsync(String query, Object... values) {
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.executeAsync(query, values), null, query, startNanos);
+    }
+    if (slowQueries) {
+      return traceSlowQuery(
+          recordLatency(session.executeAsync(query, values), null, query, startNanos),
+          startSlowQuery(null, query, startNanos));
+    }
     final Span span = buildSpan(query);
-    ResultSetFuture future = session.executeAsync(query, values);
-    future.addListener(createListener(span, future), executorService);
+    ResultSetFuture future = recordLatency(session.executeAsync(query, values), null, query,
+        startNanos);
+    future.addListener(createListener(span, future), completionExecutor);
 
-    return future;
+    return tracePages(future, span);
   }
 
   /**
@@ -219,11 +392,21 @@ public class TracingSession implements Session {
    */
   @Override
   public ResultSetFuture executeAsync(String query, Map<String, Object> values) {
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.executeAsync(query, values), null, query, startNanos);
+    }
+    if (slowQueries) {
+      return traceSlowQuery(
+          recordLatency(session.executeAsync(query, values), null, query, startNanos),
+          startSlowQuery(null, query, startNanos));
+    }
     final Span span = buildSpan(query);
-    ResultSetFuture future = session.executeAsync(query, values);
-    future.addListener(createListener(span, future), executorService);
+    ResultSetFuture future = recordLatency(session.executeAsync(query, values), null, query,
+        startNanos);
+    future.addListener(createListener(span, future), completionExecutor);
 
-    return future;
+    return tracePages(future, span);
   }
 
   /**
@@ -232,11 +415,21 @@ public class TracingSession implements Session {
   @Override
   public ResultSetFuture executeAsync(Statement statement) {
     String query = getQuery(statement);
-    final Span span = buildSpan(query);
-    ResultSetFuture future = session.executeAsync(statement);
-    future.addListener(createListener(span, future, statement), executorService);
+    long startNanos = startNanos();
+    if (!shouldTrace(query, queryDigest(statement))) {
+      return recordLatency(session.executeAsync(statement), statement, query, startNanos);
+    }
+    if (slowQueries) {
+      return traceSlowQuery(
+          recordLatency(session.executeAsync(statement), statement, query, startNanos),
+          startSlowQuery(statement, query, startNanos));
+    }
+    final Span span = buildSpan(statement, query, null);
+    ResultSetFuture future = recordLatency(session.executeAsync(statement), statement, query,
+        startNanos);
+    future.addListener(createListener(span, future, statement), completionExecutor);
 
-    return future;
+    return tracePages(future, span);
   }
 
   /**
@@ -244,7 +437,15 @@ public class TracingSession implements Session {
    */
   @Override
   public PreparedStatement prepare(String query) {
-    return session.prepare(query);
+    Span span = prepareSpans ? buildPrepareSpan(query) : null;
+    try {
+      return prepared(session.prepare(query), span);
+    } catch (Exception e) {
+      if (span != null) {
+        finishSpan(span, e);
+      }
+      throw e;
+    }
   }
 
   /**
@@ -252,7 +453,15 @@ public class TracingSession implements Session {
    */
   @Override
   public PreparedStatement prepare(RegularStatement statement) {
-    return session.prepare(statement);
+    Span span = prepareSpans ? buildPrepareSpan(getQuery(statement)) : null;
+    try {
+      return prepared(session.prepare(statement), span);
+    } catch (Exception e) {
+      if (span != null) {
+        finishSpan(span, e);
+      }
+      throw e;
+    }
   }
 
   /**
@@ -260,7 +469,8 @@ public class TracingSession implements Session {
    */
   @Override
   public ListenableFuture<PreparedStatement> prepareAsync(String query) {
-    return session.prepareAsync(query);
+    Span span = prepareSpans ? buildPrepareSpan(query) : null;
+    return prepared(session.prepareAsync(query), span);
   }
 
   /**
@@ -268,7 +478,8 @@ public class TracingSession implements Session {
    */
   @Override
   public ListenableFuture<PreparedStatement> prepareAsync(RegularStatement statement) {
-    return session.prepareAsync(statement);
+    Span span = prepareSpans ? buildPrepareSpan(getQuery(statement)) : null;
+    return prepared(session.prepareAsync(statement), span);
   }
 
   /**
@@ -276,7 +487,16 @@ public class TracingSession implements Session {
    */
   @Override
   public CloseFuture closeAsync() {
-    return session.closeAsync();
+    CloseFuture closeFuture = session.closeAsync();
+    if (ownsExecutor || ownsState) {
+      closeFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          onClosed();
+        }
+      }, DirectExecutor.INSTANCE);
+    }
+    return closeFuture;
   }
 
   /**
@@ -285,6 +505,18 @@ public class TracingSession implements Session {
   @Override
   public void close() {
     session.close();
+    onClosed();
+  }
+
+  private void onClosed() {
+    Cluster cluster = session.getCluster();
+    // the cluster rejects listener changes once closed
+    if (ownsState && !cluster.isClosed()) {
+      cluster.unregister(state.peerTagsRegistry);
+    }
+    if (ownsExecutor) {
+      executorService.shutdown();
+    }
   }
 
   @Override
@@ -308,7 +540,223 @@ public class TracingSession implements Session {
     return session.getState();
   }
 
-  private static String getQuery(Statement statement) {
+  /*
+    Queries that would not be recorded, opted out or over their rate limit are executed without
+    a span, as are all queries in metrics only mode. The rate limits of slow queries are only
+    checked once they turned out slow.
+   */
+  private boolean shouldTrace(String query, String queryDigest) {
+    return !metricsOnly && recordingDetector.isRecording(tracer)
+        && (slowQueries || state.spanRateLimiter.tryAcquire(query, queryDigest));
+  }
+
+  /*
+    Rate limits of statements prepared by this session are keyed by their query digest.
+   */
+  private static String queryDigest(Statement statement) {
+    PreparedStatementTags tags = statement instanceof BoundStatement
+        ? TracingPreparedStatement.tags((BoundStatement) statement) : null;
+    return tags == null ? null : tags.queryDigest;
+  }
+
+  /*
+    Checked once per session, the spans of plain sessions skip the public methods building spans.
+   */
+  private boolean overrides(String name, Class<?>... parameterTypes) {
+    try {
+      return getClass().getMethod(name, parameterTypes).getDeclaringClass()
+          != TracingSession.class;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private long startNanos() {
+    return state.latencyHistograms == null && !slowQueries ? 0 : System.nanoTime();
+  }
+
+  private SlowQuery startSlowQuery(Statement statement, String query, long startNanos) {
+    Span parent = tracer.activeSpan();
+    return new SlowQuery(statement, query, startNanos, parent == null ? null : parent.context());
+  }
+
+  private ResultSet finishSlowQuery(SlowQuery slowQuery, ResultSet resultSet) {
+    if (isSlow(slowQuery, slowQuery.elapsedNanos())) {
+      finishSlowQuery(slowQuery, resultSet, null);
+    }
+    return resultSet;
+  }
+
+  private void finishSlowQuery(SlowQuery slowQuery, Exception e) {
+    finishSlowQuery(slowQuery, null, e);
+  }
+
+  /*
+    Creates the span of a query that turned out slow or failed, tagged as if it had been traced
+    from its submission.
+   */
+  private void finishSlowQuery(SlowQuery slowQuery, ResultSet resultSet, Exception e) {
+    Statement statement = slowQuery.statement;
+    if (!state.spanRateLimiter.tryAcquire(slowQuery.query, queryDigest(statement))) {
+      return;
+    }
+    Span span = statement == null
+        ? buildSpan(slowQuery.query, slowQuery.startMicros(), slowQuery.parent)
+        : buildSpan(statement, slowQuery.query, slowQuery);
+    if (e == null) {
+      SLOW_QUERY.set(span, Boolean.TRUE);
+      if (statement == null) {
+        finishSpan(span, resultSet);
+      } else {
+        finishSpan(span, resultSet, statement);
+      }
+    } else if (statement == null) {
+      finishSpan(span, e);
+    } else {
+      finishSpan(span, e, statement);
+    }
+  }
+
+  /*
+    The latency is taken when the query completes, only slow or failed queries are handed to the
+    completion executor.
+   */
+  private ResultSetFuture traceSlowQuery(final ResultSetFuture future,
+      final SlowQuery slowQuery) {
+    future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        ResultSet resultSet = null;
+        Exception error = null;
+        try {
+          resultSet = future.get();
+          if (!isSlow(slowQuery, slowQuery.elapsedNanos())) {
+            return;
+          }
+        } catch (InterruptedException | ExecutionException e) {
+          error = failure(e);
+        }
+        final ResultSet slowResultSet = resultSet;
+        final Exception slowError = error;
+        completionExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            finishSlowQuery(slowQuery, slowResultSet, slowError);
+          }
+        });
+      }
+    }, DirectExecutor.INSTANCE);
+    return future;
+  }
+
+  private boolean isSlow(SlowQuery slowQuery, long nanos) {
+    PreparedStatementTags tags = slowQuery.statement instanceof BoundStatement
+        ? TracingPreparedStatement.tags((BoundStatement) slowQuery.statement) : null;
+    return nanos >= options.getSlowQueryThresholdNanos(tags == null ? null : tags.table);
+  }
+
+  /*
+    Only successful queries are recorded, keyed like their spans. The table is only known for
+    statements prepared by this session.
+   */
+  private ResultSet recordLatency(ResultSet resultSet, Statement statement, String query,
+      long startNanos) {
+    LatencyHistograms latencyHistograms = state.latencyHistograms;
+    if (latencyHistograms == null) {
+      return resultSet;
+    }
+    long nanos = System.nanoTime() - startNanos;
+    String spanName;
+    String table = null;
+    PreparedStatementTags tags = statement instanceof BoundStatement
+        ? TracingPreparedStatement.tags((BoundStatement) statement) : null;
+    if (tags != null) {
+      spanName = tags.spanName;
+      table = tags.table;
+    } else {
+      spanName = querySpanNameProvider.querySpanName(query);
+    }
+    Host host = resultSet.getExecutionInfo().getQueriedHost();
+    latencyHistograms.record(spanName, table,
+        host == null ? null : state.peerTagsRegistry.get(host).getPeer(), nanos);
+    return resultSet;
+  }
+
+  private ResultSetFuture recordLatency(final ResultSetFuture future, final Statement statement,
+      final String query, final long startNanos) {
+    if (state.latencyHistograms != null) {
+      future.addListener(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            recordLatency(future.get(), statement, query, startNanos);
+          } catch (InterruptedException | ExecutionException e) {
+            // failed queries are not recorded
+          }
+        }
+      }, DirectExecutor.INSTANCE);
+    }
+    return future;
+  }
+
+  private ResultSet tracePages(ResultSet resultSet, Span span) {
+    return pagingSpans ? TracingResultSet.wrap(resultSet, tracer, span) : resultSet;
+  }
+
+  private ResultSetFuture tracePages(ResultSetFuture future, Span span) {
+    return pagingSpans ? new TracingResultSetFuture(future, tracer, span) : future;
+  }
+
+  /*
+    Prepared statements are wrapped with the tags of their executions, computed once.
+   */
+  private PreparedStatement prepared(PreparedStatement statement, Span span) {
+    TracingPreparedStatement prepared = TracingPreparedStatement
+        .wrap(statement, querySpanNameProvider);
+    if (span != null) {
+      prepared.tags.addTags(span);
+      span.finish();
+    }
+    return prepared;
+  }
+
+  private ListenableFuture<PreparedStatement> prepared(
+      final ListenableFuture<PreparedStatement> future, final Span span) {
+    if (span != null) {
+      future.addListener(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            future.get();
+          } catch (InterruptedException | ExecutionException e) {
+            finishSpan(span, failure(e));
+          }
+        }
+      }, DirectExecutor.INSTANCE);
+    }
+    Function<PreparedStatement, PreparedStatement> wrap =
+        new Function<PreparedStatement, PreparedStatement>() {
+          @Override
+          public PreparedStatement apply(PreparedStatement statement) {
+            return prepared(statement, span);
+          }
+        };
+    if (GuavaCompatibilityUtil.isGuavaCompatibilityFound()) {
+      return GuavaCompatibility.INSTANCE.transform(future, wrap);
+    } else {
+      return Futures.transform(future, wrap);
+    }
+  }
+
+  /*
+    Futures wrap the exception of the failed query, unless it is not an Exception.
+   */
+  private static Exception failure(Exception e) {
+    Throwable cause = e.getCause();
+    return e instanceof ExecutionException && cause instanceof Exception ? (Exception) cause : e;
+  }
+
+  static String getQuery(Statement statement) {
     String query = null;
     if (statement instanceof BoundStatement) {
       query = ((BoundStatement) statement).preparedStatement().getQueryString();
@@ -355,21 +803,93 @@ public class TracingSession implements Session {
    * @return OpenTracing Span
    */
   public Span buildSpan(String query) {
-    String querySpanName = querySpanNameProvider.querySpanName(query);
-    Tracer.SpanBuilder spanBuilder = tracer.buildSpan(querySpanName)
-        .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT);
-
-    Span span = spanBuilder.start();
+    Span span = startSpan(tracer.buildSpan(querySpanNameProvider.querySpanName(query)), query,
+        null);
+    addKeyspaceTag(span);
+    return span;
+  }
 
-    Tags.COMPONENT.set(span, COMPONENT_NAME);
-    Tags.DB_STATEMENT.set(span, query);
-    Tags.DB_TYPE.set(span, "cassandra");
+  /**
+   * Build span of a query that turned out slow or failed, started when the query was submitted.
+   * Method can be overridden by subclasses to add custom tags, like {@link #buildSpan(String)}.
+   *
+   * @param query cql query statement
+   * @param startMicros submission time of the query, in microseconds since the epoch
+   * @param parent context of the span active when the query was submitted, null if none
+   * @return OpenTracing Span
+   * @see TracingOptions.Builder#withSlowQueryThreshold(long, java.util.concurrent.TimeUnit)
+   */
+  public Span buildSpan(String query, long startMicros, SpanContext parent) {
+    Span span = startSpan(slowQuerySpanBuilder(querySpanNameProvider.querySpanName(query),
+        startMicros, parent), query, null);
+    addKeyspaceTag(span);
+    return span;
+  }
 
+  private void addKeyspaceTag(Span span) {
     String keyspace = getLoggedKeyspace();
     if (keyspace != null) {
       Tags.DB_INSTANCE.set(span, keyspace);
     }
+  }
+
+  /*
+    Bound statements of statements prepared by this session reuse the tags computed when they were
+    prepared. Their spans still go through the public methods building spans when a subclass
+    overrides them.
+   */
+  private Span buildSpan(Statement statement, String query, SlowQuery slowQuery) {
+    if (statement instanceof BoundStatement) {
+      PreparedStatementTags tags = TracingPreparedStatement.tags((BoundStatement) statement);
+      if (tags != null) {
+        Span span;
+        if (slowQuery == null) {
+          span = customSpans ? buildSpan(tags.query)
+              : startSpan(tracer.buildSpan(tags.spanName), tags.query, tags.queryDigest);
+        } else {
+          span = customSlowQuerySpans
+              ? buildSpan(tags.query, slowQuery.startMicros(), slowQuery.parent)
+              : startSpan(slowQuerySpanBuilder(tags.spanName, slowQuery.startMicros(),
+                  slowQuery.parent), tags.query, tags.queryDigest);
+        }
+        tags.addTags(span);
+        return span;
+      }
+    }
+    Span span = slowQuery == null ? buildSpan(query)
+        : buildSpan(query, slowQuery.startMicros(), slowQuery.parent);
+    if (statement instanceof BatchStatement) {
+      addBatchTags(span, (BatchStatement) statement);
+    }
+    return span;
+  }
+
+  private Span buildPrepareSpan(String query) {
+    if (!shouldTrace(query, null)) {
+      return null;
+    }
+    if (customSpans) {
+      return buildSpan(query).setOperationName(PREPARE_OPERATION_NAME);
+    }
+    return startSpan(tracer.buildSpan(PREPARE_OPERATION_NAME), query, null);
+  }
+
+  /*
+    Backdates the span to the submission of the query, under the span active back then.
+   */
+  private Tracer.SpanBuilder slowQuerySpanBuilder(String operationName, long startMicros,
+      SpanContext parent) {
+    Tracer.SpanBuilder spanBuilder = tracer.buildSpan(operationName)
+        .withStartTimestamp(startMicros);
+    return parent == null ? spanBuilder.ignoreActiveSpan() : spanBuilder.asChildOf(parent);
+  }
+
+  private Span startSpan(Tracer.SpanBuilder spanBuilder, String query, String queryDigest) {
+    Span span = spanBuilder.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT).start();
 
+    Tags.COMPONENT.set(span, COMPONENT_NAME);
+    state.statementTags.addTags(span, query, queryDigest);
+    Tags.DB_TYPE.set(span, "cassandra");
     return span;
   }
 
@@ -384,17 +904,8 @@ public class TracingSession implements Session {
     addDefaultTags(span);
 
     if (resultSet != null) {
-      Host host = resultSet.getExecutionInfo().getQueriedHost();
-      Tags.PEER_PORT.set(span, host.getSocketAddress().getPort());
-
-      Tags.PEER_HOSTNAME.set(span, host.getAddress().getHostName());
-      InetAddress inetAddress = host.getSocketAddress().getAddress();
-
-      if (inetAddress instanceof Inet4Address) {
-        Tags.PEER_HOST_IPV4.set(span, inetAddress.getHostAddress());
-      } else {
-        Tags.PEER_HOST_IPV6.set(span, inetAddress.getHostAddress());
-      }
+      addPeerTags(span, resultSet.getExecutionInfo().getQueriedHost());
+      ExecutionInfoTags.addTags(span, resultSet, state.peerTagsRegistry);
     }
     span.finish();
   }
@@ -411,16 +922,8 @@ public class TracingSession implements Session {
     addDefaultStatementTags(span, statement);
 
     if (resultSet != null) {
-      Host host = resultSet.getExecutionInfo().getQueriedHost();
-      InetSocketAddress hostSocket = host.getEndPoint().resolve();
-      Tags.PEER_PORT.set(span, hostSocket.getPort());
-      Tags.PEER_HOSTNAME.set(span, hostSocket.getHostName());
-      InetAddress inetAddress = hostSocket.getAddress();
-      if (inetAddress instanceof Inet4Address) {
-        Tags.PEER_HOST_IPV4.set(span, inetAddress.getHostAddress());
-      } else {
-        Tags.PEER_HOST_IPV6.set(span, inetAddress.getHostAddress());
-      }
+      addPeerTags(span, resultSet.getExecutionInfo().getQueriedHost());
+      ExecutionInfoTags.addTags(span, resultSet, state.peerTagsRegistry);
     }
     span.finish();
   }
@@ -469,16 +972,15 @@ public class TracingSession implements Session {
    * @return Error Logs
    */
   public Map<String, Object> errorLogs(Throwable throwable) {
-    Map<String, Object> errorLogs = new HashMap<>(4);
+    Map<String, Object> errorLogs = new HashMap<>(8);
     errorLogs.put("event", Tags.ERROR.getKey());
     errorLogs.put("error.kind", throwable.getClass().getName());
     errorLogs.put("error.object", throwable);
 
     errorLogs.put("message", throwable.getMessage());
 
-    StringWriter sw = new StringWriter();
-    throwable.printStackTrace(new PrintWriter(sw));
-    errorLogs.put("stack", sw.toString());
+    // the stack is only attached to the first occurrences of an error, see TracingOptions
+    state.errorStackTraces.addLogs(errorLogs, throwable);
 
     return errorLogs;
   }
@@ -492,48 +994,67 @@ public class TracingSession implements Session {
    */
   public Map<String, Object> errorLogs(Throwable throwable, Statement statement) {
     Map<String, Object> errorLogs = errorLogs(throwable);
-    String statementStr = statement.toString();
-    errorLogs.put("query.statement", statementStr);
+    errorLogs.put("query.statement", renderStatement(statement));
     return errorLogs;
   }
 
-  private void addDefaultStatementTags(Span span, Statement statement) {
-    ConsistencyLevel cl = statement.getConsistencyLevel();
-    if (cl == null && session.getCluster().getConfiguration().getQueryOptions()
-        .isConsistencySet()) {
-      cl = session.getCluster().getConfiguration().getQueryOptions().getConsistencyLevel();
-    }
-    if (cl != null) {
-      QUERY_CONSISTENCY_LEVEL.set(span, cl.name());
+  /*
+    Renders the statement for error logs without its values, bounded in length.
+   */
+  private String renderStatement(Statement statement) {
+    String query;
+    if (statement instanceof BoundStatement || statement instanceof RegularStatement) {
+      query = getQuery(statement);
+    } else {
+      query = statement.toString();
     }
-
-    int fetchSize = statement.getFetchSize();
-    if (fetchSize == 0) {
-      fetchSize = session.getCluster().getConfiguration().getQueryOptions().getFetchSize();
+    int maxLength = options.getMaxErrorStatementLength();
+    if (query.length() > maxLength) {
+      return query.substring(0, maxLength) + "...";
     }
-    QUERY_FETCH_SIZE.set(span, fetchSize);
+    return query;
+  }
 
-    boolean isIdempotent = session.getCluster().getConfiguration().getQueryOptions()
-        .getDefaultIdempotence();
-    if (statement.isIdempotent() != null) {
-      isIdempotent = statement.isIdempotent();
-    }
-    QUERY_IDEMPOTENCE.set(span, isIdempotent);
+  private void addBatchTags(Span span, BatchStatement batch) {
+    Configuration configuration = session.getCluster().getConfiguration();
+    BatchTags.addTags(span, batch, configuration.getProtocolOptions().getProtocolVersion(),
+        configuration.getCodecRegistry(), batchSummary ? querySpanNameProvider : null);
   }
 
-  private void addDefaultTags(Span span) {
-    ConsistencyLevel cl = session.getCluster().getConfiguration().getQueryOptions()
-        .getConsistencyLevel();
-    if (cl != null) {
-      QUERY_CONSISTENCY_LEVEL.set(span, cl.name());
+  private void addPeerTags(Span span, Host host) {
+    if (host != null) {
+      state.peerTagsRegistry.get(host).addTags(span);
     }
+  }
 
-    int fetchSize = session.getCluster().getConfiguration().getQueryOptions().getFetchSize();
+  private void addDefaultStatementTags(Span span, Statement statement) {
+    queryOptionsTags().addTags(span, statement);
+  }
 
-    QUERY_FETCH_SIZE.set(span, fetchSize);
+  private void addDefaultTags(Span span) {
+    queryOptionsTags().addTags(span);
+  }
 
-    boolean isIdempotent = session.getCluster().getConfiguration().getQueryOptions()
-        .getDefaultIdempotence();
-    QUERY_IDEMPOTENCE.set(span, isIdempotent);
+  /*
+    Returns the snapshot of the query options. The driver does not notify changes to the options,
+    they are compared with the snapshot every QUERY_OPTIONS_CHECK_INTERVAL spans, and a new
+    snapshot is taken only when they changed.
+   */
+  private QueryOptionsTags queryOptionsTags() {
+    QueryOptionsTags tags = this.queryOptionsTags;
+    if (tags != null && ++spansSinceCheck < QUERY_OPTIONS_CHECK_INTERVAL) {
+      return tags;
+    }
+    spansSinceCheck = 0;
+    QueryOptions queryOptions = this.queryOptions;
+    if (queryOptions == null) {
+      queryOptions = session.getCluster().getConfiguration().getQueryOptions();
+      this.queryOptions = queryOptions;
+    }
+    if (tags == null || !tags.isCurrent(queryOptions)) {
+      tags = new QueryOptionsTags(queryOptions);
+      this.queryOptionsTags = tags;
+    }
+    return tags;
   }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import io.opentracing.contrib.cassandra.core.CqlFingerprints;
+import io.opentracing.contrib.cassandra.core.LatencyHistograms;
+import io.opentracing.contrib.cassandra.core.SpanRateLimiter;
+import io.opentracing.contrib.cassandra.core.StatementTags;
+
+/**
+ * Runtime state shared by {@link TracingCluster} and all its sessions.
+ */
+class TracingState {
+
+  final PeerTagsRegistry peerTagsRegistry = new PeerTagsRegistry();
+  final ErrorStackTraces errorStackTraces;
+  final SpanRateLimiter spanRateLimiter;
+  // null when latency histograms are disabled
+  final LatencyHistograms latencyHistograms;
+  final StatementTags statementTags;
+
+  TracingState(TracingOptions options) {
+    CqlFingerprints fingerprints = new CqlFingerprints(options.getFingerprintCacheSize());
+    this.errorStackTraces = new ErrorStackTraces(options.getErrorStacksPerWindow(),
+        options.getErrorStackWindowNanos());
+    this.spanRateLimiter = new SpanRateLimiter(options.getQuerySpanRate(),
+        options.getGlobalSpanRate(), options.getUntracedQueries(), fingerprints);
+    this.latencyHistograms = options.isLatencyHistograms()
+        ? new LatencyHistograms(options.getMaxHistograms()) : null;
+    this.statementTags = new StatementTags(options.isStatementFingerprints(),
+        options.getMaxStatementLength(), options.getStatementDictionaryWindowNanos(),
+        fingerprints);
+  }
+}
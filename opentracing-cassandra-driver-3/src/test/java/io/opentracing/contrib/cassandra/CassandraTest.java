@@ -21,9 +21,12 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
@@ -31,6 +34,13 @@ import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.utils.UUIDs;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.opentracing.Scope;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.cassandra.core.BatchSpanTags;
+import io.opentracing.contrib.cassandra.core.Histogram;
+import io.opentracing.contrib.cassandra.core.LatencyHistograms;
+import io.opentracing.contrib.cassandra.core.RecordingDetector;
+import io.opentracing.contrib.cassandra.nameprovider.CustomStringSpanName;
+import io.opentracing.contrib.cassandra.nameprovider.QueryMethodTableSpanName;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
 import io.opentracing.tag.Tags;
@@ -38,6 +48,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
@@ -83,6 +94,136 @@ public class CassandraTest {
     assertNull(mockTracer.activeSpan());
   }
 
+  @Test
+  public void withoutParentAsyncDirectCompletion() throws Exception {
+    Cluster.Builder builder = Cluster.builder().addContactPoints("127.0.0.1").withPort(9142);
+    Cluster cluster = new TracingCluster(builder, mockTracer,
+        CustomStringSpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withCompletionMode(CompletionMode.DIRECT).build());
+    Session session = cluster.connect();
+    createKeyspaceAsync(session);
+    createTableAsync(session);
+    insertAsync(session);
+    session.closeAsync().get(15, TimeUnit.SECONDS);
+
+    waitForSpans(mockTracer, 5);
+
+    List<MockSpan> finished = mockTracer.finishedSpans();
+    assertEquals(5, finished.size());
+
+    checkSpans(finished);
+    assertNull(mockTracer.activeSpan());
+  }
+
+  @Test
+  public void notRecording() throws Exception {
+    Cluster.Builder builder = Cluster.builder().addContactPoints("127.0.0.1").withPort(9142);
+    Cluster cluster = new TracingCluster(builder, mockTracer,
+        CustomStringSpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withRecordingDetector(new RecordingDetector() {
+          @Override
+          public boolean isRecording(Tracer tracer) {
+            return false;
+          }
+        }).build());
+    Session session = cluster.newSession();
+    session.execute("SELECT release_version FROM system.local");
+    session.executeAsync("SELECT release_version FROM system.local").get(15, TimeUnit.SECONDS);
+    session.close();
+    cluster.close();
+
+    assertEquals(0, mockTracer.finishedSpans().size());
+  }
+
+  @Test
+  public void pagingSpans() {
+    Cluster.Builder builder = Cluster.builder().addContactPoints("127.0.0.1").withPort(9142);
+    Cluster cluster = new TracingCluster(builder, mockTracer,
+        CustomStringSpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withPagingSpans(true).build());
+    Session session = cluster.newSession();
+    ResultSet resultSet = session
+        .execute(new SimpleStatement("SELECT * FROM system_schema.columns").setFetchSize(10));
+    long rows = 0;
+    for (Row ignored : resultSet) {
+      rows++;
+    }
+
+    MockSpan query = mockTracer.finishedSpans().get(0);
+    assertEquals(true, query.tags().get(ExecutionInfoTags.MORE_PAGES.getKey()));
+    // a single node, neither retried nor speculated
+    assertNull(query.tags().get(ExecutionInfoTags.TRIED_HOSTS.getKey()));
+    assertNull(query.tags().get(ExecutionInfoTags.SPECULATIVE_EXECUTIONS.getKey()));
+    int pages = resultSet.getAllExecutionInfo().size();
+    assertTrue(pages > 1);
+
+    // the query and a span for every page after the first one, tagged with running totals
+    waitForSpans(mockTracer, pages);
+    for (MockSpan mockSpan : mockTracer.finishedSpans()) {
+      if (TracingResultSet.FETCH_OPERATION_NAME.equals(mockSpan.operationName())) {
+        assertEquals(query.context().spanId(), mockSpan.parentId());
+        int page = (Integer) mockSpan.tags().get(TracingResultSet.PAGE);
+        assertEquals(page + 1, mockSpan.tags().get(TracingResultSet.PAGES));
+        assertTrue((Long) mockSpan.tags().get(TracingResultSet.ROWS) < rows);
+        assertNotNull(mockSpan.tags().get(TracingResultSet.TOTAL_FETCH_NANOS));
+      }
+    }
+    session.close();
+    cluster.close();
+  }
+
+  @Test
+  public void batch() {
+    Cluster.Builder builder = Cluster.builder().addContactPoints("127.0.0.1").withPort(9142);
+    Cluster cluster = new TracingCluster(builder, mockTracer,
+        QueryMethodTableSpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withBatchSummary(true).build());
+    Session session = cluster.newSession();
+    createKeyspace(session);
+    createTable(session);
+    PreparedStatement prepared = session.prepare("INSERT INTO test.book (id, title) VALUES (?, ?)");
+    UUID id = UUIDs.timeBased();
+    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED)
+        .add(prepared.bind(id, "title"))
+        .add(prepared.bind(id, "other title"))
+        .add(prepared.bind(UUIDs.timeBased(), "title"));
+    session.execute(batch);
+    session.close();
+    cluster.close();
+
+    List<MockSpan> finished = mockTracer.finishedSpans();
+    MockSpan span = finished.get(finished.size() - 1);
+    assertEquals("UNLOGGED", span.tags().get(BatchSpanTags.BATCH_TYPE.getKey()));
+    assertEquals(3, span.tags().get(BatchSpanTags.BATCH_SIZE.getKey()));
+    assertEquals(1, span.tags().get(BatchSpanTags.BATCH_TABLES.getKey()));
+    assertEquals("test.book", span.tags().get(BatchSpanTags.BATCH_TABLE_NAMES.getKey()));
+    assertEquals(2, span.tags().get(BatchTags.BATCH_PARTITIONS.getKey()));
+    assertEquals("test.book", span.tags().get(TracingSession.QUERY_TABLE.getKey()));
+    assertEquals("Cassandra.INSERT - test.book",
+        span.tags().get(BatchTags.BATCH_STATEMENTS.getKey()));
+  }
+
+  @Test
+  public void batchOfSimpleStatements() {
+    Session session = createSession();
+    createKeyspace(session);
+    createTable(session);
+    BatchStatement batch = new BatchStatement(BatchStatement.Type.LOGGED)
+        .add(new SimpleStatement("INSERT INTO test.book (id, title) VALUES (?, ?)",
+            UUIDs.timeBased(), "title"));
+    session.execute(batch);
+    session.close();
+
+    List<MockSpan> finished = mockTracer.finishedSpans();
+    MockSpan span = finished.get(finished.size() - 1);
+    assertEquals("LOGGED", span.tags().get(BatchSpanTags.BATCH_TYPE.getKey()));
+    assertEquals(1, span.tags().get(BatchSpanTags.BATCH_SIZE.getKey()));
+    // the table of a simple statement is unknown
+    assertNull(span.tags().get(BatchSpanTags.BATCH_TABLES.getKey()));
+    assertNull(span.tags().get(BatchSpanTags.BATCH_TABLE_NAMES.getKey()));
+    assertNull(span.tags().get(TracingSession.QUERY_TABLE.getKey()));
+  }
+
   @Test
   public void withoutParent() {
     Session session = createSession();
@@ -102,6 +243,100 @@ public class CassandraTest {
     assertNull(mockTracer.activeSpan());
   }
 
+  @Test
+  public void preparedStatement() {
+    Cluster.Builder builder = Cluster.builder().addContactPoints("127.0.0.1").withPort(9142);
+    Cluster cluster = new TracingCluster(builder, mockTracer,
+        QueryMethodTableSpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withPrepareSpans(true).build());
+    Session session = cluster.newSession();
+    createKeyspace(session);
+    createTable(session);
+    mockTracer.reset();
+    PreparedStatement prepared = session.prepare("INSERT INTO test.book (id, title) VALUES (?, ?)");
+    session.execute(prepared.bind(UUIDs.timeBased(), "title"));
+    session.close();
+    cluster.close();
+
+    List<MockSpan> finished = mockTracer.finishedSpans();
+    assertEquals(2, finished.size());
+    MockSpan prepare = finished.get(0);
+    assertEquals(TracingSession.PREPARE_OPERATION_NAME, prepare.operationName());
+    MockSpan execute = finished.get(1);
+    assertEquals("Cassandra.INSERT - test.book", execute.operationName());
+    for (MockSpan span : finished) {
+      assertEquals("test", span.tags().get(Tags.DB_INSTANCE.getKey()));
+      assertEquals("test.book", span.tags().get(TracingSession.QUERY_TABLE.getKey()));
+      assertEquals("INSERT", span.tags().get(PreparedStatementTags.QUERY_KIND.getKey()));
+    }
+    assertNotNull(execute.tags().get(PreparedStatementTags.QUERY_DIGEST.getKey()));
+    assertEquals(prepare.tags().get(PreparedStatementTags.QUERY_DIGEST.getKey()),
+        execute.tags().get(PreparedStatementTags.QUERY_DIGEST.getKey()));
+  }
+
+  @Test
+  public void metricsOnly() {
+    Cluster.Builder builder = Cluster.builder().addContactPoints("127.0.0.1").withPort(9142);
+    TracingCluster cluster = new TracingCluster(builder, mockTracer,
+        QueryMethodTableSpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withMetricsOnly(true).build());
+    Session session = cluster.newSession();
+    createKeyspace(session);
+    createTable(session);
+    PreparedStatement prepared = session.prepare("INSERT INTO test.book (id, title) VALUES (?, ?)");
+    session.execute(prepared.bind(UUIDs.timeBased(), "title"));
+    session.close();
+    cluster.close();
+
+    assertEquals(0, mockTracer.finishedSpans().size());
+    Map<LatencyHistograms.Key, Histogram> latencies = cluster.getLatencyHistograms().asMap();
+    LatencyHistograms.Key insert = null;
+    for (LatencyHistograms.Key key : latencies.keySet()) {
+      if (key.getSpanName().equals("Cassandra.INSERT - test.book")) {
+        insert = key;
+      }
+    }
+    assertNotNull(insert);
+    assertEquals("test.book", insert.getTable());
+    assertTrue(insert.getHost().endsWith(":9142"));
+    assertEquals(1, latencies.get(insert).getCount());
+  }
+
+  @Test
+  public void slowQueries() throws Exception {
+    Cluster.Builder builder = Cluster.builder().addContactPoints("127.0.0.1").withPort(9142);
+    Cluster cluster = new TracingCluster(builder, mockTracer,
+        CustomStringSpanName.newBuilder().build("execute"),
+        TracingOptions.newBuilder()
+            .withCompletionMode(CompletionMode.DIRECT)
+            .withSlowQueryThreshold(1, TimeUnit.HOURS)
+            .withSlowQueryThreshold("test.book", 0, TimeUnit.NANOSECONDS)
+            .build());
+    Session session = cluster.newSession();
+    createKeyspace(session);
+    createTable(session);
+    PreparedStatement prepared = session.prepare("INSERT INTO test.book (id, title) VALUES (?, ?)");
+    session.execute(prepared.bind(UUIDs.timeBased(), "title"));
+    try {
+      session.executeAsync("bad query").get();
+      fail();
+    } catch (ExecutionException ignored) {
+    }
+    session.close();
+    cluster.close();
+
+    // only the statement on test.book is slow, the bad query failed
+    waitForSpans(mockTracer, 2);
+    List<MockSpan> finished = mockTracer.finishedSpans();
+    assertEquals(2, finished.size());
+    MockSpan insert = finished.get(0);
+    assertEquals(true, insert.tags().get(TracingSession.SLOW_QUERY.getKey()));
+    assertEquals("test.book", insert.tags().get(TracingSession.QUERY_TABLE.getKey()));
+    assertNotNull(insert.tags().get(Tags.PEER_PORT.getKey()));
+    assertTrue(insert.finishMicros() >= insert.startMicros());
+    checkSpanWithError(finished.get(1));
+  }
+
   @Test
   public void badQuery() {
     Session session = createSession();
@@ -409,6 +644,8 @@ public class CassandraTest {
 
       assertNotNull(mockSpan.tags().get(Tags.DB_STATEMENT.getKey()));
       assertNotNull(mockSpan.tags().get(Tags.PEER_HOSTNAME.getKey()));
+      assertNotNull(mockSpan.tags().get(Tags.PEER_HOST_IPV4.getKey()));
+      assertEquals(9142, mockSpan.tags().get(Tags.PEER_PORT.getKey()));
     }
   }
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.opentracing.contrib.cassandra.CompletionExecutor.RejectionPolicy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class CompletionExecutorTest {
+
+  @Test
+  public void namedDaemonThreads() throws Exception {
+    CompletionExecutor executor = CompletionExecutor.newBuilder().build();
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+      }
+    }).get(15, TimeUnit.SECONDS);
+
+    assertTrue(thread.get().isDaemon());
+    assertTrue(thread.get().getName().startsWith("cassandra-tracing-"));
+    executor.shutdown();
+  }
+
+  @Test
+  public void finishInlineWhenFull() throws Exception {
+    CompletionExecutor executor = CompletionExecutor.newBuilder()
+        .withThreads(1)
+        .withQueueCapacity(1)
+        .build();
+    CountDownLatch release = new CountDownLatch(1);
+    executor.execute(await(release));
+    executor.execute(await(release));
+    assertEquals(1, executor.getQueueDepth());
+
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+      }
+    });
+    assertSame(Thread.currentThread(), thread.get());
+    assertEquals(1, executor.getRejectedCount());
+
+    release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(15, TimeUnit.SECONDS));
+
+    // completions arriving after shutdown are still finished
+    thread.set(null);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+      }
+    });
+    assertSame(Thread.currentThread(), thread.get());
+    assertEquals(2, executor.getRejectedCount());
+  }
+
+  @Test
+  public void discardWhenFull() throws Exception {
+    CompletionExecutor executor = CompletionExecutor.newBuilder()
+        .withThreads(1)
+        .withQueueCapacity(1)
+        .withRejectionPolicy(RejectionPolicy.DISCARD)
+        .build();
+    CountDownLatch release = new CountDownLatch(1);
+    executor.execute(await(release));
+    executor.execute(await(release));
+
+    final AtomicInteger runs = new AtomicInteger();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    });
+    assertEquals(1, executor.getRejectedCount());
+
+    release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(15, TimeUnit.SECONDS));
+    assertEquals(0, runs.get());
+    assertFalse(executor.getQueueDepth() > 0);
+  }
+
+  private static Runnable await(final CountDownLatch latch) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+}
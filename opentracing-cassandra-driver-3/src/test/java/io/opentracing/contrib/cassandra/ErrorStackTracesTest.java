@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ErrorStackTracesTest {
+
+  private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+  private final ErrorStackTraces errorStackTraces = new ErrorStackTraces(2, WINDOW);
+
+  @Test
+  public void stackOnlyForFirstOccurrencesInWindow() {
+    // same call site, so same frames
+    Exception[] exceptions = newExceptions(4);
+    Map<String, Object> first = logs(exceptions[0], 0);
+    Map<String, Object> second = logs(exceptions[1], 10);
+    Map<String, Object> third = logs(exceptions[2], 20);
+
+    assertTrue(first.containsKey(ErrorStackTraces.STACK));
+    // same frames, each with its own message
+    String firstStack = (String) first.get(ErrorStackTraces.STACK);
+    String secondStack = (String) second.get(ErrorStackTraces.STACK);
+    assertTrue(firstStack.startsWith(exceptions[0].toString()));
+    assertTrue(secondStack.startsWith(exceptions[1].toString()));
+    assertEquals(firstStack.substring(exceptions[0].toString().length()),
+        secondStack.substring(exceptions[1].toString().length()));
+    assertFalse(third.containsKey(ErrorStackTraces.STACK));
+    assertEquals(first.get(ErrorStackTraces.FINGERPRINT), third.get(ErrorStackTraces.FINGERPRINT));
+    assertEquals(1, errorStackTraces.size());
+
+    Map<String, Object> nextWindow = logs(exceptions[3], WINDOW + 20);
+    assertTrue(nextWindow.containsKey(ErrorStackTraces.STACK));
+  }
+
+  @Test
+  public void fingerprintDependsOnTypeAndFrames() {
+    Exception[] exceptions = newExceptions(2);
+    Exception exception = exceptions[0];
+    assertEquals(ErrorStackTraces.hash(exception), ErrorStackTraces.hash(exceptions[1]));
+    assertNotEquals(ErrorStackTraces.hash(exception),
+        ErrorStackTraces.hash(new IllegalStateException("message")));
+    assertNotEquals(ErrorStackTraces.hash(exception),
+        ErrorStackTraces.hash(new RuntimeException("message", exception)));
+  }
+
+  @Test
+  public void stackOfCauses() {
+    Exception cause = new IllegalStateException("cause");
+    Map<String, Object> logs = logs(new RuntimeException("error", cause), 0);
+
+    String stack = (String) logs.get(ErrorStackTraces.STACK);
+    assertTrue(stack.startsWith("java.lang.RuntimeException: error"));
+    assertTrue(stack.contains("Caused by: java.lang.IllegalStateException: cause"));
+    assertTrue(stack.contains("\tat " + cause.getStackTrace()[0]));
+  }
+
+  @Test
+  public void noStackWhenDisabled() {
+    ErrorStackTraces disabled = new ErrorStackTraces(0, WINDOW);
+    Map<String, Object> logs = new HashMap<>();
+    disabled.addLogs(logs, new IllegalArgumentException("message"), 0);
+    assertFalse(logs.containsKey(ErrorStackTraces.STACK));
+    assertTrue(logs.containsKey(ErrorStackTraces.FINGERPRINT));
+  }
+
+  private Map<String, Object> logs(Throwable throwable, long nowNanos) {
+    Map<String, Object> logs = new HashMap<>();
+    errorStackTraces.addLogs(logs, throwable, nowNanos);
+    return logs;
+  }
+
+  private static Exception[] newExceptions(int count) {
+    Exception[] exceptions = new Exception[count];
+    for (int i = 0; i < count; i++) {
+      exceptions[i] = new IllegalArgumentException("message " + i);
+    }
+    return exceptions;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.EndPoint;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.ResultSet;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class ExecutionInfoTagsTest {
+
+  private final MockTracer mockTracer = new MockTracer();
+  private final PeerTagsRegistry peerTagsRegistry = new PeerTagsRegistry();
+
+  @Test
+  public void retriedSpeculatedAndDowngraded() throws UnknownHostException {
+    ExecutionInfo executionInfo = mock(ExecutionInfo.class);
+    when(executionInfo.getTriedHosts()).thenReturn(
+        Arrays.asList(host("node1", (byte) 1), host("node2", (byte) 2)));
+    when(executionInfo.getSpeculativeExecutions()).thenReturn(2);
+    when(executionInfo.getSuccessfulExecutionIndex()).thenReturn(1);
+    when(executionInfo.getAchievedConsistencyLevel()).thenReturn(ConsistencyLevel.ONE);
+
+    MockSpan span = addTags(resultSet(executionInfo, false));
+
+    assertEquals("10.0.0.1:9042,10.0.0.2:9042",
+        span.tags().get(ExecutionInfoTags.TRIED_HOSTS.getKey()));
+    assertEquals(2, span.tags().get(ExecutionInfoTags.SPECULATIVE_EXECUTIONS.getKey()));
+    assertEquals(1, span.tags().get(ExecutionInfoTags.SUCCESSFUL_EXECUTION_INDEX.getKey()));
+    assertEquals("ONE", span.tags().get(ExecutionInfoTags.ACHIEVED_CONSISTENCY_LEVEL.getKey()));
+    assertEquals(true, span.tags().get(ExecutionInfoTags.MORE_PAGES.getKey()));
+  }
+
+  @Test
+  public void singlePlainAttempt() throws UnknownHostException {
+    ExecutionInfo executionInfo = mock(ExecutionInfo.class);
+    List<Host> triedHosts = Collections.singletonList(host("node1", (byte) 1));
+    when(executionInfo.getTriedHosts()).thenReturn(triedHosts);
+
+    MockSpan span = addTags(resultSet(executionInfo, true));
+
+    assertTrue(span.tags().isEmpty());
+  }
+
+  private MockSpan addTags(ResultSet resultSet) {
+    MockSpan span = mockTracer.buildSpan("execute").start();
+    ExecutionInfoTags.addTags(span, resultSet, peerTagsRegistry);
+    return span;
+  }
+
+  private static ResultSet resultSet(ExecutionInfo executionInfo, boolean fullyFetched) {
+    ResultSet resultSet = mock(ResultSet.class);
+    when(resultSet.getExecutionInfo()).thenReturn(executionInfo);
+    when(resultSet.isFullyFetched()).thenReturn(fullyFetched);
+    return resultSet;
+  }
+
+  static Host host(String hostname, byte lastByte) throws UnknownHostException {
+    // hostname is given, so reading it never triggers a reverse lookup
+    InetSocketAddress socketAddress = new InetSocketAddress(
+        InetAddress.getByAddress(hostname, new byte[]{10, 0, 0, lastByte}), 9042);
+    EndPoint endPoint = mock(EndPoint.class);
+    when(endPoint.resolve()).thenReturn(socketAddress);
+    Host host = mock(Host.class);
+    when(host.getEndPoint()).thenReturn(endPoint);
+    when(host.getDatacenter()).thenReturn("datacenter1");
+    when(host.getRack()).thenReturn("rack1");
+    return host;
+  }
+}
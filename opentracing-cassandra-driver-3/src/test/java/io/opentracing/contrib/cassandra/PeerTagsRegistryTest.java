@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.EndPoint;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Session;
+import io.opentracing.contrib.cassandra.nameprovider.CustomStringSpanName;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class PeerTagsRegistryTest {
+
+  private final PeerTagsRegistry registry = new PeerTagsRegistry();
+
+  @Test
+  public void tagsComputedOnce() throws UnknownHostException {
+    Host host = host(InetAddress.getByAddress("node1", new byte[]{10, 0, 0, 1}));
+    PeerTags peerTags = registry.get(host);
+
+    assertEquals("10.0.0.1:9042", peerTags.getPeer());
+    assertFalse(peerTags.isUnresolved());
+    assertSame(peerTags, registry.get(host));
+
+    MockSpan span = new MockTracer().buildSpan("execute").start();
+    peerTags.addTags(span);
+    assertEquals("node1", span.tags().get("peer.hostname"));
+    assertEquals("10.0.0.1", span.tags().get("peer.ipv4"));
+    assertEquals(9042, span.tags().get("peer.port"));
+    assertEquals("datacenter1", span.tags().get(PeerTags.PEER_DATACENTER.getKey()));
+  }
+
+  @Test
+  public void addressLiteralsResolvedInBackground() throws UnknownHostException {
+    final Host host = host(InetAddress.getByAddress(new byte[]{127, 0, 0, 1}));
+    PeerTags peerTags = registry.get(host);
+    assertTrue(peerTags.isUnresolved());
+
+    await().atMost(15, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return !registry.get(host).isUnresolved();
+      }
+    });
+    assertEquals("127.0.0.1:9042", registry.get(host).getPeer());
+  }
+
+  @Test
+  public void refreshedWhenHostChanges() throws UnknownHostException {
+    Host host = host(InetAddress.getByAddress("node1", new byte[]{10, 0, 0, 1}));
+    PeerTags peerTags = registry.get(host);
+    registry.onUp(host);
+    assertSame(peerTags, registry.get(host));
+
+    when(host.getDatacenter()).thenReturn("datacenter2");
+    registry.onUp(host);
+    PeerTags refreshed = registry.get(host);
+    assertNotSame(peerTags, refreshed);
+    assertTrue(refreshed.isCurrent(host));
+  }
+
+  @Test
+  public void forgetsRemovedHosts() throws UnknownHostException {
+    Host host = host(InetAddress.getByAddress("node1", new byte[]{10, 0, 0, 1}));
+    PeerTags peerTags = registry.get(host);
+    registry.onRemove(host);
+    assertNotSame(peerTags, registry.get(host));
+
+    peerTags = registry.get(host);
+    registry.onUnregister(null);
+    assertNotSame(peerTags, registry.get(host));
+  }
+
+  @Test
+  public void standaloneSessionRegistersWhileOpen() {
+    Cluster cluster = mock(Cluster.class);
+    Session session = mock(Session.class);
+    when(session.getCluster()).thenReturn(cluster);
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    Session tracingSession = new TracingSession(session, new MockTracer(),
+        CustomStringSpanName.newBuilder().build(), executorService);
+    verify(cluster).register(any(PeerTagsRegistry.class));
+
+    tracingSession.close();
+    verify(cluster).unregister(any(PeerTagsRegistry.class));
+    executorService.shutdown();
+  }
+
+  private static Host host(InetAddress address) {
+    EndPoint endPoint = mock(EndPoint.class);
+    when(endPoint.resolve()).thenReturn(new InetSocketAddress(address, 9042));
+    Host host = mock(Host.class);
+    when(host.getEndPoint()).thenReturn(endPoint);
+    when(host.getDatacenter()).thenReturn("datacenter1");
+    when(host.getRack()).thenReturn("rack1");
+    return host;
+  }
+}
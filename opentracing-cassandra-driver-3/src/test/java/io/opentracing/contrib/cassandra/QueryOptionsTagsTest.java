@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.QueryOptions;
+import com.datastax.driver.core.SimpleStatement;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import org.junit.Test;
+
+public class QueryOptionsTagsTest {
+
+  private final MockTracer mockTracer = new MockTracer();
+
+  @Test
+  public void defaultTags() {
+    QueryOptions queryOptions = new QueryOptions()
+        .setConsistencyLevel(ConsistencyLevel.QUORUM)
+        .setFetchSize(100)
+        .setDefaultIdempotence(true);
+    QueryOptionsTags tags = new QueryOptionsTags(queryOptions);
+
+    MockSpan span = mockTracer.buildSpan("execute").start();
+    tags.addTags(span);
+
+    assertEquals("QUORUM", span.tags().get(TracingSession.QUERY_CONSISTENCY_LEVEL.getKey()));
+    assertEquals(100, span.tags().get(TracingSession.QUERY_FETCH_SIZE.getKey()));
+    assertEquals(true, span.tags().get(TracingSession.QUERY_IDEMPOTENCE.getKey()));
+  }
+
+  @Test
+  public void statementOverridesDefaults() {
+    QueryOptions queryOptions = new QueryOptions().setFetchSize(100);
+    QueryOptionsTags tags = new QueryOptionsTags(queryOptions);
+
+    MockSpan span = mockTracer.buildSpan("execute").start();
+    tags.addTags(span, new SimpleStatement("SELECT * FROM test.book"));
+    // consistency level was not set explicitly on the query options
+    assertNull(span.tags().get(TracingSession.QUERY_CONSISTENCY_LEVEL.getKey()));
+    assertEquals(100, span.tags().get(TracingSession.QUERY_FETCH_SIZE.getKey()));
+    assertEquals(false, span.tags().get(TracingSession.QUERY_IDEMPOTENCE.getKey()));
+
+    span = mockTracer.buildSpan("execute").start();
+    tags.addTags(span, new SimpleStatement("SELECT * FROM test.book")
+        .setConsistencyLevel(ConsistencyLevel.ONE)
+        .setFetchSize(10)
+        .setIdempotent(true));
+    assertEquals("ONE", span.tags().get(TracingSession.QUERY_CONSISTENCY_LEVEL.getKey()));
+    assertEquals(10, span.tags().get(TracingSession.QUERY_FETCH_SIZE.getKey()));
+    assertEquals(true, span.tags().get(TracingSession.QUERY_IDEMPOTENCE.getKey()));
+  }
+
+  @Test
+  public void snapshotIsRefreshedOnChange() {
+    QueryOptions queryOptions = new QueryOptions();
+    QueryOptionsTags tags = new QueryOptionsTags(queryOptions);
+    assertTrue(tags.isCurrent(queryOptions));
+
+    queryOptions.setFetchSize(queryOptions.getFetchSize() + 1);
+    assertFalse(tags.isCurrent(queryOptions));
+
+    tags = new QueryOptionsTags(queryOptions);
+    queryOptions.setConsistencyLevel(ConsistencyLevel.ALL);
+    assertFalse(tags.isCurrent(queryOptions));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra4;
+
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import io.opentracing.Span;
+import io.opentracing.contrib.cassandra.core.BatchSpanTags;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Tags describing a {@link BatchStatement}, see {@link BatchSpanTags}: type, number of statements
+ * and tables written. Tables are read from the tags of the prepared statements of the batch, and
+ * only tagged when every statement of the batch is a bound statement of a known table.
+ */
+final class BatchTags {
+
+  private BatchTags() {
+  }
+
+  /**
+   * @param preparedStatementTags cached tags of the prepared statements of the session
+   * @return description of the batch, e.g. {@code BATCH UNLOGGED test.book}
+   */
+  static String addTags(Span span, BatchStatement batch,
+      Function<PreparedStatement, PreparedStatementTags> preparedStatementTags) {
+    String type = String.valueOf(batch.getBatchType());
+    BatchSpanTags.BATCH_TYPE.set(span, type);
+    BatchSpanTags.BATCH_SIZE.set(span, batch.size());
+
+    Set<String> tables = new HashSet<>();
+    for (BatchableStatement<?> statement : batch) {
+      String table = statement instanceof BoundStatement ? preparedStatementTags
+          .apply(((BoundStatement) statement).getPreparedStatement()).table : null;
+      if (table == null) {
+        return "BATCH " + type;
+      }
+      tables.add(table);
+    }
+    if (tables.isEmpty()) {
+      return "BATCH " + type;
+    }
+
+    String names = BatchSpanTags.tableNames(tables);
+    BatchSpanTags.BATCH_TABLES.set(span, tables.size());
+    BatchSpanTags.BATCH_TABLE_NAMES.set(span, names);
+    return "BATCH " + type + " " + names;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra4;
+
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.data.ByteUtils;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
+import io.opentracing.contrib.cassandra.nameprovider.StatementKind;
+import io.opentracing.tag.StringTag;
+import io.opentracing.tag.Tags;
+
+/**
+ * Immutable tag values of a prepared statement, read once from its metadata: span name, keyspace,
+ * table, statement kind and prepared id.
+ */
+final class PreparedStatementTags {
+
+  static final StringTag QUERY_TABLE = new StringTag("query.table");
+  static final StringTag QUERY_KIND = new StringTag("query.kind");
+
+  final String spanName;
+  @Nullable
+  final String keyspace;
+  @Nullable
+  final String table;
+  @Nullable
+  private final String kind;
+  // hexadecimal, without the 0x prefix
+  final String preparedId;
+
+  PreparedStatementTags(PreparedStatement statement, QuerySpanNameProvider spanNameProvider) {
+    this.spanName = spanNameProvider.querySpanName(statement.getQuery());
+    ColumnDefinition column = firstColumn(statement.getVariableDefinitions());
+    if (column == null) {
+      column = firstColumn(statement.getResultSetDefinitions());
+    }
+    if (column != null) {
+      this.keyspace = column.getKeyspace().asInternal();
+      this.table = keyspace + "." + column.getTable().asInternal();
+    } else {
+      this.keyspace = null;
+      this.table = null;
+    }
+    this.kind = StatementKind.of(statement.getQuery());
+    this.preparedId = ByteUtils.toHexString(statement.getId()).substring(2);
+  }
+
+  void addTags(SpanBuilder spanBuilder) {
+    if (keyspace != null) {
+      spanBuilder.withTag(Tags.DB_INSTANCE.getKey(), keyspace);
+    }
+    if (table != null) {
+      spanBuilder.withTag(QUERY_TABLE.getKey(), table);
+    }
+    if (kind != null) {
+      spanBuilder.withTag(QUERY_KIND.getKey(), kind);
+    }
+  }
+
+  @Nullable
+  private static ColumnDefinition firstColumn(ColumnDefinitions columns) {
+    return columns.size() > 0 ? columns.get(0) : null;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra4;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.Row;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * {@link AsyncResultSet} creating a span for every page fetched with {@link #fetchNextPage()},
+ * child of the span of the query. Page spans are tagged with the page index, the rows in the page
+ * and the time spent waiting for it, the span of the last page with the total pages and rows of
+ * the query. Only result sets having more pages are wrapped.
+ */
+class TracingAsyncResultSet implements AsyncResultSet {
+
+  static final String FETCH_NEXT_PAGE_OPERATION_NAME = "fetchNextPage";
+  static final String PAGE = "cassandra.page";
+  static final String PAGE_ROWS = "cassandra.page.rows";
+  static final String PAGE_WAIT_NANOS = "cassandra.page.wait_ns";
+  static final String TOTAL_PAGES = "cassandra.total_pages";
+  static final String TOTAL_ROWS = "cassandra.total_rows";
+
+  private final AsyncResultSet resultSet;
+  private final Tracer tracer;
+  private final SpanContext parent;
+  private final int page;
+  private final long totalRows;
+
+  /**
+   * @param page index of the page, 0 for the first one
+   * @param totalRows rows in this page and the previous ones
+   */
+  TracingAsyncResultSet(AsyncResultSet resultSet, Tracer tracer, SpanContext parent, int page,
+      long totalRows) {
+    this.resultSet = resultSet;
+    this.tracer = tracer;
+    this.parent = parent;
+    this.page = page;
+    this.totalRows = totalRows;
+  }
+
+  static AsyncResultSet wrap(AsyncResultSet resultSet, Tracer tracer, Span span) {
+    if (!resultSet.hasMorePages()) {
+      return resultSet;
+    }
+    return new TracingAsyncResultSet(resultSet, tracer, span.context(), 0, resultSet.remaining());
+  }
+
+  @NonNull
+  @Override
+  public ColumnDefinitions getColumnDefinitions() {
+    return resultSet.getColumnDefinitions();
+  }
+
+  @NonNull
+  @Override
+  public ExecutionInfo getExecutionInfo() {
+    return resultSet.getExecutionInfo();
+  }
+
+  @Override
+  public int remaining() {
+    return resultSet.remaining();
+  }
+
+  @NonNull
+  @Override
+  public Iterable<Row> currentPage() {
+    return resultSet.currentPage();
+  }
+
+  @Override
+  public boolean hasMorePages() {
+    return resultSet.hasMorePages();
+  }
+
+  @NonNull
+  @Override
+  public CompletionStage<AsyncResultSet> fetchNextPage() throws IllegalStateException {
+    final int nextPage = page + 1;
+    final Span span = tracer.buildSpan(FETCH_NEXT_PAGE_OPERATION_NAME)
+        .asChildOf(parent)
+        .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+        .withTag(Tags.COMPONENT.getKey(), TracingCqlSession.COMPONENT_NAME)
+        .withTag(Tags.DB_TYPE.getKey(), "cassandra")
+        .withTag(PAGE, nextPage)
+        .start();
+    final long startNanos = System.nanoTime();
+
+    return resultSet.fetchNextPage().whenComplete((nextResultSet, throwable) -> {
+      span.setTag(PAGE_WAIT_NANOS, System.nanoTime() - startNanos);
+      if (throwable != null) {
+        TracingCqlSession.onError(span, throwable);
+      } else {
+        span.setTag(PAGE_ROWS, nextResultSet.remaining());
+        if (!nextResultSet.hasMorePages()) {
+          span.setTag(TOTAL_PAGES, nextPage + 1);
+          span.setTag(TOTAL_ROWS, totalRows + nextResultSet.remaining());
+        }
+      }
+      span.finish();
+    }).thenApply(nextResultSet -> nextResultSet.hasMorePages()
+        ? new TracingAsyncResultSet(nextResultSet, tracer, parent, nextPage,
+        totalRows + nextResultSet.remaining())
+        : nextResultSet);
+  }
+
+  @Override
+  public boolean wasApplied() {
+    return resultSet.wasApplied();
+  }
+}
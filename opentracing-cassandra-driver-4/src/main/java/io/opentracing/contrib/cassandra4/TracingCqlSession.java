@@ -13,17 +13,21 @@
  */
 package io.opentracing.contrib.cassandra4;
 
+import com.datastax.dse.driver.api.core.cql.reactive.ReactiveResultSet;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.context.DriverContext;
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
 import com.datastax.oss.driver.api.core.cql.PrepareRequest;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.SimpleStatement;
 import com.datastax.oss.driver.api.core.cql.Statement;
 import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.Node;
 import com.datastax.oss.driver.api.core.metrics.Metrics;
 import com.datastax.oss.driver.api.core.session.Request;
 import com.datastax.oss.driver.api.core.type.reflect.GenericType;
@@ -32,40 +36,108 @@ import edu.umd.cs.findbugs.annotations.Nullable;
 import io.opentracing.Span;
 import io.opentracing.Tracer;
 import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.contrib.cassandra.core.BoundedCache;
+import io.opentracing.contrib.cassandra.core.CqlFingerprints;
+import io.opentracing.contrib.cassandra.core.Histograms;
+import io.opentracing.contrib.cassandra.core.LatencyHistograms;
+import io.opentracing.contrib.cassandra.core.RecordingDetector;
+import io.opentracing.contrib.cassandra.core.SpanRateLimiter;
+import io.opentracing.contrib.cassandra.core.StatementTags;
+import io.opentracing.contrib.cassandra.nameprovider.CachingQuerySpanNameProvider;
+import io.opentracing.contrib.cassandra.nameprovider.CustomStringSpanName;
+import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
+import io.opentracing.tag.IntTag;
+import io.opentracing.tag.StringTag;
 import io.opentracing.tag.Tags;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.reactivestreams.Publisher;
 
 public class TracingCqlSession implements CqlSession {
   static final String COMPONENT_NAME = "java-cassandra";
+  static final IntTag REQUEST_SIZE = new IntTag("cassandra.request.size");
+  static final StringTag REQUEST_TYPE = new StringTag("cassandra.request.type");
+  private static final int MAX_PREPARED_STATEMENT_TAGS = 1024;
   private final CqlSession session;
   private final Tracer tracer;
+  private final QuerySpanNameProvider querySpanNameProvider;
+  private final RecordingDetector recordingDetector;
+  private final SpanRateLimiter spanRateLimiter;
+  @Nullable
+  private final TracingRequestTracker requestTracker;
+  private final boolean pagingSpans;
+  private final boolean metricsOnly;
+  private final CqlFingerprints fingerprints;
+  private final StatementTags statementTags;
+  @Nullable
+  private final LatencyHistograms latencyHistograms;
+  // formatted addresses of the coordinators, nodes are few and long-lived
+  private final ConcurrentMap<Node, String> peers = new ConcurrentHashMap<>();
+  // null when request sizes are disabled
+  @Nullable
+  private final Histograms requestSizeHistograms;
+  private final BoundedCache<ByteBuffer, PreparedStatementTags> preparedStatementTags =
+      new BoundedCache<>(MAX_PREPARED_STATEMENT_TAGS);
 
   public TracingCqlSession(CqlSession session, Tracer tracer) {
+    this(session, tracer, TracingOptions.DEFAULT);
+  }
+
+  public TracingCqlSession(CqlSession session, Tracer tracer, TracingOptions options) {
+    this(session, tracer, CustomStringSpanName.newBuilder().build("execute"), options);
+  }
+
+  public TracingCqlSession(CqlSession session, Tracer tracer,
+      QuerySpanNameProvider querySpanNameProvider) {
+    this(session, tracer, querySpanNameProvider, TracingOptions.DEFAULT);
+  }
+
+  public TracingCqlSession(CqlSession session, Tracer tracer,
+      QuerySpanNameProvider querySpanNameProvider, TracingOptions options) {
     this.session = session;
     this.tracer = tracer;
+    this.querySpanNameProvider = CachingQuerySpanNameProvider.wrap(querySpanNameProvider);
+    this.recordingDetector = options.getRecordingDetector();
+    this.fingerprints = new CqlFingerprints(options.getFingerprintCacheSize());
+    this.spanRateLimiter = new SpanRateLimiter(options.getQuerySpanRate(),
+        options.getGlobalSpanRate(), options.getUntracedQueries(), fingerprints);
+    this.requestTracker = options.getRequestTracker();
+    this.pagingSpans = options.isPagingSpans();
+    this.metricsOnly = options.isMetricsOnly();
+    this.statementTags = new StatementTags(options.isStatementFingerprints(),
+        options.getMaxStatementLength(), options.getStatementDictionaryWindowNanos(),
+        fingerprints);
+    this.latencyHistograms = options.isLatencyHistograms()
+        ? new LatencyHistograms(options.getMaxHistograms()) : null;
+    // statements beyond are recorded together, see Histograms.OTHER
+    this.requestSizeHistograms = options.isRequestSizes()
+        ? new Histograms(options.getMaxHistograms()) : null;
+    if (requestTracker != null) {
+      requestTracker.decorate();
+    }
   }
 
   @Override
   @NonNull
   public ResultSet execute(@NonNull Statement<?> statement) {
-    SpanBuilder spanBuilder = spanBuilder();
-
-    if (statement instanceof SimpleStatement) {
-      SimpleStatement simpleStatement = (SimpleStatement) statement;
-      spanBuilder.withTag(Tags.DB_STATEMENT.getKey(), simpleStatement.getQuery());
-    } else if (statement instanceof BoundStatement) {
-      BoundStatement boundStatement = (BoundStatement) statement;
-      spanBuilder
-          .withTag(Tags.DB_STATEMENT.getKey(), boundStatement.getPreparedStatement().getQuery());
+    String query = getQuery(statement);
+    long startNanos = startNanos();
+    if (!shouldTrace(query, statement)) {
+      return recordLatency(session.execute(statement), statement, query, startNanos);
     }
-
-    final Span span = spanBuilder.start();
+    final Span span = spanBuilder(statement, query).start();
+    onStart(statement, span);
 
     try {
-      return session.execute(statement);
+      return recordLatency(session.execute(statement), statement, query, startNanos);
     } catch (Exception e) {
       onError(span, e);
       throw e;
@@ -77,9 +149,19 @@ public class TracingCqlSession implements CqlSession {
   @Override
   @NonNull
   public ResultSet execute(@NonNull String query) {
-    final Span span = spanBuilder().withTag(Tags.DB_STATEMENT.getKey(), query).start();
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.execute(query), null, query, startNanos);
+    }
+    final Span span = spanBuilder(query).start();
     try {
-      return session.execute(query);
+      if (requestTracker != null || requestSizeHistograms != null) {
+        // the tracker and the request size need the statement executed by the driver
+        SimpleStatement statement = SimpleStatement.newInstance(query);
+        onStart(statement, span);
+        return recordLatency(session.execute(statement), null, query, startNanos);
+      }
+      return recordLatency(session.execute(query), null, query, startNanos);
     } catch (Exception e) {
       onError(span, e);
       throw e;
@@ -91,37 +173,66 @@ public class TracingCqlSession implements CqlSession {
   @Override
   @NonNull
   public CompletionStage<AsyncResultSet> executeAsync(@NonNull Statement<?> statement) {
-    SpanBuilder spanBuilder = spanBuilder();
-
-    if (statement instanceof SimpleStatement) {
-      SimpleStatement simpleStatement = (SimpleStatement) statement;
-      spanBuilder.withTag(Tags.DB_STATEMENT.getKey(), simpleStatement.getQuery());
-    } else if (statement instanceof BoundStatement) {
-      BoundStatement boundStatement = (BoundStatement) statement;
-      spanBuilder
-          .withTag(Tags.DB_STATEMENT.getKey(), boundStatement.getPreparedStatement().getQuery());
+    String query = getQuery(statement);
+    long startNanos = startNanos();
+    if (!shouldTrace(query, statement)) {
+      return recordLatency(session.executeAsync(statement), statement, query, startNanos);
     }
+    final Span span = spanBuilder(statement, query).start();
 
-    final Span span = spanBuilder.start();
-
-    return session.executeAsync(statement).whenComplete((asyncResultSet, throwable) -> {
-      if (throwable != null) {
-        onError(span, throwable);
-      }
-      span.finish();
-    });
+    return executeAsync(statement, query, span, startNanos);
   }
 
   @Override
   @NonNull
   public CompletionStage<AsyncResultSet> executeAsync(@NonNull String query) {
-    final Span span = spanBuilder().withTag(Tags.DB_STATEMENT.getKey(), query).start();
-    return session.executeAsync(query).whenComplete((asyncResultSet, throwable) -> {
-      if (throwable != null) {
-        onError(span, throwable);
-      }
-      span.finish();
-    });
+    long startNanos = startNanos();
+    if (!shouldTrace(query, null)) {
+      return recordLatency(session.executeAsync(query), null, query, startNanos);
+    }
+    final Span span = spanBuilder(query).start();
+    if (requestTracker != null || pagingSpans || requestSizeHistograms != null) {
+      // the statement path is where the tracker, the paging spans and the request size hook in
+      return executeAsync(SimpleStatement.newInstance(query), query, span, startNanos);
+    }
+    return recordLatency(session.executeAsync(query), null, query, startNanos)
+        .whenComplete((asyncResultSet, throwable) -> {
+          if (throwable != null) {
+            onError(span, throwable);
+          }
+          span.finish();
+        });
+  }
+
+  private CompletionStage<AsyncResultSet> executeAsync(Statement<?> statement,
+      @Nullable String query, Span span, long startNanos) {
+    onStart(statement, span);
+    CompletionStage<AsyncResultSet> future = recordLatency(session.executeAsync(statement),
+        statement, query, startNanos)
+        .whenComplete((asyncResultSet, throwable) -> {
+          if (throwable != null) {
+            onError(span, throwable);
+            onCancel(statement, throwable);
+          } else if (pagingSpans) {
+            span.setTag(TracingAsyncResultSet.PAGE_ROWS, asyncResultSet.remaining());
+          }
+          span.finish();
+        });
+    if (pagingSpans) {
+      return future.thenApply(asyncResultSet ->
+          TracingAsyncResultSet.wrap(asyncResultSet, tracer, span));
+    }
+    return future;
+  }
+
+  /**
+   * The span starts when the result set is subscribed to, see {@link TracingReactiveResultSet}.
+   * The other {@code executeReactive} methods go through this one.
+   */
+  @Override
+  @NonNull
+  public ReactiveResultSet executeReactive(@NonNull Statement<?> statement) {
+    return new TracingReactiveResultSet(session.executeReactive(statement), statement, this);
   }
 
   @Override
@@ -225,12 +336,88 @@ public class TracingCqlSession implements CqlSession {
     return session.getMetrics();
   }
 
+  /**
+   * Requests of the types handled by the other methods of this session are routed to them, so they
+   * are traced once. Other requests, e.g. of driver extensions, get a span finished with their
+   * result, or on completion when the result is a {@link CompletionStage}. Requests returning
+   * another {@link Publisher} are not traced.
+   */
   @Override
   @Nullable
+  @SuppressWarnings("unchecked")
   public <RequestT extends Request, ResultT> ResultT execute(
       @NonNull RequestT request,
       @NonNull GenericType<ResultT> resultType) {
-    return session.execute(request, resultType);
+    Class<?> resultClass = resultType.getRawType();
+    Statement<?> statement = request instanceof Statement ? (Statement<?>) request : null;
+    if (statement != null) {
+      if (Statement.SYNC.equals(resultType)) {
+        return (ResultT) execute(statement);
+      } else if (Statement.ASYNC.equals(resultType)) {
+        return (ResultT) executeAsync(statement);
+      } else if (resultClass == ReactiveResultSet.class) {
+        return (ResultT) executeReactive(statement);
+      }
+    }
+    if (request instanceof PrepareRequest || Publisher.class.isAssignableFrom(resultClass)) {
+      return session.execute(request, resultType);
+    }
+
+    String query = statement != null ? getQuery(statement) : null;
+    if (!shouldTrace(query, statement)) {
+      return session.execute(request, resultType);
+    }
+    SpanBuilder spanBuilder = statement != null ? spanBuilder(statement, query)
+        : spanBuilder(querySpanNameProvider.querySpanName(""), null, null);
+    final Span span = spanBuilder
+        .withTag(REQUEST_TYPE.getKey(), request.getClass().getSimpleName())
+        .start();
+    if (statement != null) {
+      onStart(statement, span);
+    }
+
+    ResultT result;
+    try {
+      result = session.execute(request, resultType);
+    } catch (Exception e) {
+      onError(span, e);
+      span.finish();
+      throw e;
+    }
+    if (result instanceof CompletionStage) {
+      ((CompletionStage<?>) result).whenComplete((ignored, throwable) -> {
+        if (throwable != null) {
+          onError(span, throwable);
+          if (statement != null) {
+            onCancel(statement, throwable);
+          }
+        }
+        span.finish();
+      });
+    } else {
+      span.finish();
+    }
+    return result;
+  }
+
+  /**
+   * @return encoded sizes of the requests in bytes by statement id, the prepared id of bound
+   * statements or else the fingerprint id of the query, or by batch description like
+   * {@code BATCH UNLOGGED test.book}. Null unless enabled with
+   * {@link TracingOptions.Builder#withRequestSizes(boolean)}.
+   */
+  @Nullable
+  public Histograms getRequestSizes() {
+    return requestSizeHistograms;
+  }
+
+  /**
+   * @return latencies of the successful queries keyed by span name, table and coordinator, null
+   * unless enabled with {@link TracingOptions.Builder#withLatencyHistograms(boolean)}
+   */
+  @Nullable
+  public LatencyHistograms getLatencyHistograms() {
+    return latencyHistograms;
   }
 
   @Override
@@ -262,7 +449,173 @@ public class TracingCqlSession implements CqlSession {
   }
 
 
-  private static void onError(Span span, Throwable e) {
+  /*
+    Queries that would not be recorded, opted out or over their rate limit are executed without
+    a span, as are all queries in metrics only mode.
+   */
+  private boolean shouldTrace(@Nullable String query, @Nullable Statement<?> statement) {
+    if (metricsOnly || !recordingDetector.isRecording(tracer)) {
+      return false;
+    }
+    // bound statements are limited by prepared id
+    String preparedId = statement instanceof BoundStatement ? preparedStatementTags(
+        ((BoundStatement) statement).getPreparedStatement()).preparedId : null;
+    return spanRateLimiter.tryAcquire(query == null ? "" : query, preparedId);
+  }
+
+  private long startNanos() {
+    return latencyHistograms == null ? 0 : System.nanoTime();
+  }
+
+  private ResultSet recordLatency(ResultSet resultSet, @Nullable Statement<?> statement,
+      @Nullable String query, long startNanos) {
+    if (latencyHistograms != null) {
+      recordLatency(resultSet.getExecutionInfo(), statement, query, startNanos);
+    }
+    return resultSet;
+  }
+
+  /*
+    The stage is returned as is, so cancelling it still cancels the request.
+   */
+  private CompletionStage<AsyncResultSet> recordLatency(CompletionStage<AsyncResultSet> future,
+      @Nullable Statement<?> statement, @Nullable String query, long startNanos) {
+    if (latencyHistograms != null) {
+      future.whenComplete((asyncResultSet, throwable) -> {
+        if (throwable == null) {
+          recordLatency(asyncResultSet.getExecutionInfo(), statement, query, startNanos);
+        }
+      });
+    }
+    return future;
+  }
+
+  /*
+    Only successful queries are recorded, keyed like their spans. The table is only known for bound
+    statements.
+   */
+  private void recordLatency(ExecutionInfo executionInfo, @Nullable Statement<?> statement,
+      @Nullable String query, long startNanos) {
+    long nanos = System.nanoTime() - startNanos;
+    String spanName;
+    String table = null;
+    if (statement instanceof BoundStatement) {
+      PreparedStatementTags tags = preparedStatementTags(
+          ((BoundStatement) statement).getPreparedStatement());
+      spanName = tags.spanName;
+      table = tags.table;
+    } else {
+      spanName = querySpanNameProvider.querySpanName(query == null ? "" : query);
+    }
+    Node coordinator = executionInfo.getCoordinator();
+    latencyHistograms.record(spanName, table,
+        coordinator == null ? null : peers.computeIfAbsent(coordinator, TracingCqlSession::peer),
+        nanos);
+  }
+
+  private static String peer(Node node) {
+    SocketAddress address = node.getEndPoint().resolve();
+    if (address instanceof InetSocketAddress) {
+      InetSocketAddress socketAddress = (InetSocketAddress) address;
+      String host = socketAddress.getAddress() == null ? socketAddress.getHostString()
+          : socketAddress.getAddress().getHostAddress();
+      return host + ":" + socketAddress.getPort();
+    }
+    return address.toString();
+  }
+
+  private void onStart(Statement<?> statement, Span span) {
+    String description = statement instanceof BatchStatement
+        ? BatchTags.addTags(span, (BatchStatement) statement, this::preparedStatementTags) : null;
+    if (requestSizeHistograms != null) {
+      recordRequestSize(statement, span, description);
+    }
+    if (requestTracker != null) {
+      requestTracker.onStart(statement, span);
+    }
+  }
+
+  // Falls back to the keyspace of the session
+  private void addKeyspaceTag(SpanBuilder spanBuilder, @Nullable CqlIdentifier keyspace) {
+    if (keyspace == null) {
+      keyspace = session.getKeyspace().orElse(null);
+    }
+    if (keyspace != null) {
+      spanBuilder.withTag(Tags.DB_INSTANCE.getKey(), keyspace.asInternal());
+    }
+  }
+
+  private PreparedStatementTags preparedStatementTags(PreparedStatement statement) {
+    return preparedStatementTags.get(statement.getId(),
+        id -> new PreparedStatementTags(statement, querySpanNameProvider));
+  }
+
+  /*
+    Sizes are keyed like the db.statement.id tag, so that their number is bounded by the distinct
+    statements rather than the distinct literal values.
+   */
+  private void recordRequestSize(Statement<?> statement, Span span,
+      @Nullable String batchDescription) {
+    int size;
+    try {
+      size = statement.computeSizeInBytes(session.getContext());
+    } catch (RuntimeException e) {
+      // e.g. a value without codec, the driver fails the request itself
+      return;
+    }
+    REQUEST_SIZE.set(span, size);
+    requestSizeHistograms.record(batchDescription != null ? batchDescription
+        : statementId(statement), size);
+  }
+
+  /*
+    Starts the span of a subscription to a reactive result set, null if it is not traced.
+   */
+  @Nullable
+  Span startReactiveSpan(Statement<?> statement) {
+    String query = getQuery(statement);
+    if (!shouldTrace(query, statement)) {
+      return null;
+    }
+    Span span = spanBuilder(statement, query).start();
+    onStart(statement, span);
+    return span;
+  }
+
+  /*
+    The driver does not report on cancelled requests, the tracker would keep them forever.
+   */
+  private void onCancel(Statement<?> statement, Throwable throwable) {
+    if (throwable instanceof CancellationException) {
+      onCancel(statement);
+    }
+  }
+
+  void onCancel(Statement<?> statement) {
+    if (requestTracker != null) {
+      requestTracker.onCancel(statement);
+    }
+  }
+
+  private String statementId(Statement<?> statement) {
+    if (statement instanceof BoundStatement) {
+      return preparedStatementTags(((BoundStatement) statement).getPreparedStatement()).preparedId;
+    }
+    String query = getQuery(statement);
+    return query != null ? fingerprints.of(query).getId() : statement.getClass().getSimpleName();
+  }
+
+  @Nullable
+  private static String getQuery(Statement<?> statement) {
+    if (statement instanceof SimpleStatement) {
+      return ((SimpleStatement) statement).getQuery();
+    } else if (statement instanceof BoundStatement) {
+      return ((BoundStatement) statement).getPreparedStatement().getQuery();
+    }
+    return null;
+  }
+
+  static void onError(Span span, Throwable e) {
     Tags.ERROR.set(span, Boolean.TRUE);
     span.log(errorLogs(e));
   }
@@ -274,10 +627,43 @@ public class TracingCqlSession implements CqlSession {
     return errorLogs;
   }
 
-  private SpanBuilder spanBuilder() {
-    return tracer.buildSpan("execute")
+  private SpanBuilder spanBuilder(String query) {
+    SpanBuilder spanBuilder = spanBuilder(querySpanNameProvider.querySpanName(query), query, null);
+    addKeyspaceTag(spanBuilder, null);
+    return spanBuilder;
+  }
+
+  /*
+    Bound statements are named and tagged from the metadata of their prepared statement, read once
+    per prepared statement.
+   */
+  private SpanBuilder spanBuilder(Statement<?> statement, @Nullable String query) {
+    if (statement instanceof BoundStatement) {
+      PreparedStatementTags tags = preparedStatementTags(
+          ((BoundStatement) statement).getPreparedStatement());
+      SpanBuilder spanBuilder = spanBuilder(tags.spanName, query, tags.preparedId);
+      tags.addTags(spanBuilder);
+      if (tags.keyspace == null) {
+        addKeyspaceTag(spanBuilder, statement.getRoutingKeyspace());
+      }
+      return spanBuilder;
+    }
+    SpanBuilder spanBuilder = spanBuilder(
+        querySpanNameProvider.querySpanName(query == null ? "" : query), query, null);
+    CqlIdentifier keyspace = statement.getKeyspace();
+    addKeyspaceTag(spanBuilder, keyspace != null ? keyspace : statement.getRoutingKeyspace());
+    return spanBuilder;
+  }
+
+  private SpanBuilder spanBuilder(String operationName, @Nullable String query,
+      @Nullable String preparedId) {
+    SpanBuilder spanBuilder = tracer.buildSpan(operationName)
         .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
         .withTag(Tags.COMPONENT.getKey(), COMPONENT_NAME)
         .withTag(Tags.DB_TYPE.getKey(), "cassandra");
+    if (query != null) {
+      statementTags.addTags(spanBuilder, query, preparedId);
+    }
+    return spanBuilder;
   }
 }
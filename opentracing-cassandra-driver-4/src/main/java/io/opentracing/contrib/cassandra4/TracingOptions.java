@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra4;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.opentracing.contrib.cassandra.core.AbstractTracingOptions;
+
+/**
+ * Tuning options of {@link TracingCqlSession}.
+ */
+public class TracingOptions extends AbstractTracingOptions {
+
+  static final TracingOptions DEFAULT = newBuilder().build();
+
+  private final TracingRequestTracker requestTracker;
+  private final boolean pagingSpans;
+  private final boolean requestSizes;
+
+  public static class Builder extends AbstractTracingOptions.Builder<Builder> {
+
+    private TracingRequestTracker requestTracker;
+    private boolean pagingSpans;
+    private boolean requestSizes;
+
+    @Override
+    protected Builder self() {
+      return this;
+    }
+
+    /**
+     * Creates a child span for every node attempt of the traced requests. The tracker must be
+     * registered with the session builder too.
+     */
+    public Builder withRequestTracker(TracingRequestTracker requestTracker) {
+      this.requestTracker = requestTracker;
+      return this;
+    }
+
+    /**
+     * Creates a span for every page fetched with {@code AsyncResultSet.fetchNextPage()}, child of
+     * the span of the query. Disabled by default.
+     */
+    public Builder withPagingSpans(boolean pagingSpans) {
+      this.pagingSpans = pagingSpans;
+      return this;
+    }
+
+    /**
+     * Tags the encoded size of every request and records it in
+     * {@link TracingCqlSession#getRequestSizes()}, per statement. Disabled by default as computing
+     * the size walks the values of the statement.
+     */
+    public Builder withRequestSizes(boolean requestSizes) {
+      this.requestSizes = requestSizes;
+      return this;
+    }
+
+    public TracingOptions build() {
+      return new TracingOptions(this);
+    }
+  }
+
+  private TracingOptions(Builder builder) {
+    super(builder);
+    this.requestTracker = builder.requestTracker;
+    this.pagingSpans = builder.pagingSpans;
+    this.requestSizes = builder.requestSizes;
+  }
+
+  @Nullable
+  public TracingRequestTracker getRequestTracker() {
+    return requestTracker;
+  }
+
+  public boolean isPagingSpans() {
+    return pagingSpans;
+  }
+
+  public boolean isRequestSizes() {
+    return requestSizes;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+}
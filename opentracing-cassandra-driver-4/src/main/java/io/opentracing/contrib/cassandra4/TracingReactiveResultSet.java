@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra4;
+
+import com.datastax.dse.driver.api.core.cql.reactive.ReactiveResultSet;
+import com.datastax.dse.driver.api.core.cql.reactive.ReactiveRow;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.opentracing.Span;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * {@link ReactiveResultSet} creating a span for every subscription. The span starts on
+ * subscription and ends on completion, error or cancellation. It is tagged with the rows emitted,
+ * the pages they came from, the time spent waiting on Cassandra while the subscriber had
+ * outstanding demand, and the time the subscriber held rows back, processing them or not
+ * requesting more.
+ */
+class TracingReactiveResultSet implements ReactiveResultSet {
+
+  static final String ROWS = "cassandra.rows";
+  // pages the emitted rows came from, told apart by their ExecutionInfo, not the pages requested
+  static final String PAGES = "cassandra.pages";
+  static final String WAIT_NANOS = "cassandra.wait_ns";
+  static final String BACKPRESSURE_NANOS = "cassandra.backpressure_ns";
+  static final String CANCELLED = "cassandra.cancelled";
+
+  private final ReactiveResultSet resultSet;
+  private final Statement<?> statement;
+  private final TracingCqlSession session;
+
+  TracingReactiveResultSet(ReactiveResultSet resultSet, Statement<?> statement,
+      TracingCqlSession session) {
+    this.resultSet = resultSet;
+    this.statement = statement;
+    this.session = session;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super ReactiveRow> subscriber) {
+    Span span = session.startReactiveSpan(statement);
+    if (span == null) {
+      resultSet.subscribe(subscriber);
+    } else {
+      resultSet.subscribe(new TracingSubscriber(subscriber, span));
+    }
+  }
+
+  @NonNull
+  @Override
+  public Publisher<? extends ColumnDefinitions> getColumnDefinitions() {
+    return resultSet.getColumnDefinitions();
+  }
+
+  @NonNull
+  @Override
+  public Publisher<? extends ExecutionInfo> getExecutionInfos() {
+    return resultSet.getExecutionInfos();
+  }
+
+  @NonNull
+  @Override
+  public Publisher<Boolean> wasApplied() {
+    return resultSet.wasApplied();
+  }
+
+  /*
+    Signals are serialized by the publisher, demand can be requested and the subscription cancelled
+    from any thread. The counters are only written by the publisher and volatile, so a cancellation
+    tags those of the rows emitted so far. Time is split between waiting, while the subscriber has
+    outstanding demand and is not processing a row, and backpressure, the rest of the time.
+   */
+  private class TracingSubscriber implements Subscriber<ReactiveRow>, Subscription {
+
+    private final Subscriber<? super ReactiveRow> subscriber;
+    private final Span span;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private Subscription subscription;
+    private volatile boolean inOnNext;
+    // 0 when not waiting
+    private final AtomicLong waitingSince = new AtomicLong();
+    private volatile long waitNanos;
+    private volatile long rows;
+    private volatile int pages;
+    private ExecutionInfo executionInfo;
+
+    TracingSubscriber(Subscriber<? super ReactiveRow> subscriber, Span span) {
+      this.subscriber = subscriber;
+      this.span = span;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      subscriber.onSubscribe(this);
+    }
+
+    @Override
+    public void onNext(ReactiveRow row) {
+      long waitingSince = this.waitingSince.getAndSet(0);
+      if (waitingSince != 0) {
+        waitNanos += System.nanoTime() - waitingSince;
+      }
+      rows++;
+      if (row.getExecutionInfo() != executionInfo) {
+        executionInfo = row.getExecutionInfo();
+        pages++;
+      }
+      demand.decrementAndGet();
+      inOnNext = true;
+      try {
+        subscriber.onNext(row);
+      } finally {
+        inOnNext = false;
+        // overrides a start set by a request racing with the row, while it was being processed
+        if (demand.get() > 0) {
+          this.waitingSince.set(System.nanoTime());
+        }
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      if (finish()) {
+        TracingCqlSession.onError(span, throwable);
+        span.finish();
+      }
+      subscriber.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      if (finish()) {
+        span.finish();
+      }
+      subscriber.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n > 0) {
+        long previous = demand.getAndAdd(n);
+        if (previous + n < previous) {
+          // unbounded
+          demand.set(Long.MAX_VALUE);
+        }
+        if (previous <= 0 && !inOnNext) {
+          waitingSince.compareAndSet(0, System.nanoTime());
+        }
+      }
+      subscription.request(n);
+    }
+
+    @Override
+    public void cancel() {
+      subscription.cancel();
+      if (finish()) {
+        span.setTag(CANCELLED, true);
+        session.onCancel(statement);
+        span.finish();
+      }
+    }
+
+    /*
+      Tags the span once, whichever of completion, error or cancellation comes first.
+     */
+    private boolean finish() {
+      if (!finished.compareAndSet(false, true)) {
+        return false;
+      }
+      long waitingSince = this.waitingSince.get();
+      long nowNanos = System.nanoTime();
+      long waitNanos = this.waitNanos + (waitingSince != 0 ? nowNanos - waitingSince : 0);
+      span.setTag(ROWS, rows);
+      span.setTag(PAGES, pages);
+      span.setTag(WAIT_NANOS, waitNanos);
+      span.setTag(BACKPRESSURE_NANOS, Math.max(0, nowNanos - startNanos - waitNanos));
+      return true;
+    }
+  }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra4;
+
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.contrib.cassandra.core.RecordingDetector;
+import io.opentracing.tag.Tags;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RequestTracker} creating a child span for every node attempt of a request, including
+ * retries and speculative executions, tagged with the node, the latency measured by the driver and
+ * the outcome.
+ *
+ * <p>Register it when building the session:
+ * <pre>{@code
+ * TracingRequestTracker tracker = new TracingRequestTracker(tracer);
+ * CqlSession session = CqlSession.builder().withRequestTracker(tracker).build();
+ * }</pre>
+ * Used alone, it also creates the span of the request, child of the span active on the thread
+ * reporting the request first, if any. Given to a {@link TracingCqlSession}
+ * through {@link TracingOptions.Builder#withRequestTracker(TracingRequestTracker)}, attempt spans
+ * are children of the spans of the decorator and only requests traced by the decorator get them.
+ *
+ * <p>Attempt spans are placed on the clock of the request span: they start at its start plus the
+ * time elapsed until the attempt was sent, and last the latency measured by the driver.
+ *
+ * <p>The driver identifies a request by its statement only, so a statement instance executed
+ * concurrently gets attempt spans for one of its executions at a time.
+ */
+public class TracingRequestTracker implements RequestTracker {
+
+  static final String ATTEMPT_OPERATION_NAME = "attempt";
+  static final String NODE = "cassandra.node";
+  static final String ATTEMPT = "cassandra.attempt";
+  static final String LATENCY_NANOS = "cassandra.latency_ns";
+  static final String OUTCOME = "cassandra.outcome";
+  static final String PEER_DATACENTER = "peer.datacenter";
+  static final String PEER_RACK = "peer.rack";
+
+  private static final int MAXIMUM_REQUESTS = 65536;
+
+  private final Tracer tracer;
+  private final RecordingDetector recordingDetector;
+  private final ConcurrentMap<RequestKey, TracedRequest> requests = new ConcurrentHashMap<>();
+  private volatile boolean decorated;
+
+  public TracingRequestTracker(Tracer tracer) {
+    this(tracer, TracingOptions.DEFAULT);
+  }
+
+  public TracingRequestTracker(Tracer tracer, TracingOptions options) {
+    this.tracer = tracer;
+    this.recordingDetector = options.getRecordingDetector();
+  }
+
+  /*
+    From now on, only requests started by the decorator get spans.
+   */
+  void decorate() {
+    this.decorated = true;
+  }
+
+  void onStart(Request request, Span span) {
+    makeRoom();
+    requests.putIfAbsent(new RequestKey(request),
+        new TracedRequest(span, null, System.nanoTime(), nowMicros()));
+  }
+
+  void onCancel(Request request) {
+    requests.remove(new RequestKey(request));
+  }
+
+  @Override
+  public void onNodeSuccess(@NonNull Request request, long latencyNanos,
+      @NonNull DriverExecutionProfile executionProfile, @NonNull Node node) {
+    onAttempt(request, latencyNanos, node, null);
+  }
+
+  @Override
+  public void onNodeError(@NonNull Request request, @NonNull Throwable error, long latencyNanos,
+      @NonNull DriverExecutionProfile executionProfile, @NonNull Node node) {
+    onAttempt(request, latencyNanos, node, error);
+  }
+
+  @Override
+  public void onSuccess(@NonNull Request request, long latencyNanos,
+      @NonNull DriverExecutionProfile executionProfile, @NonNull Node node) {
+    onEnd(request, latencyNanos, null);
+  }
+
+  @Override
+  public void onError(@NonNull Request request, @NonNull Throwable error, long latencyNanos,
+      @NonNull DriverExecutionProfile executionProfile, @Nullable Node node) {
+    onEnd(request, latencyNanos, error);
+  }
+
+  @Override
+  public void close() {
+    requests.clear();
+  }
+
+  private void onAttempt(Request request, long latencyNanos, Node node, Throwable error) {
+    RequestKey key = new RequestKey(request);
+    TracedRequest tracedRequest = requests.get(key);
+    if (tracedRequest == null) {
+      if (decorated || !recordingDetector.isRecording(tracer)) {
+        return;
+      }
+      makeRoom();
+      tracedRequest = standaloneRequest();
+      TracedRequest existing = requests.putIfAbsent(key, tracedRequest);
+      if (existing != null) {
+        tracedRequest = existing;
+      }
+    }
+    tracedRequest.add(new Attempt(node, latencyNanos, System.nanoTime(), error));
+  }
+
+  private void onEnd(Request request, long latencyNanos, Throwable error) {
+    TracedRequest tracedRequest = requests.remove(new RequestKey(request));
+    if (tracedRequest == null) {
+      if (decorated || !recordingDetector.isRecording(tracer)) {
+        return;
+      }
+      // failed before reaching any node
+      tracedRequest = standaloneRequest();
+    }
+
+    Span requestSpan = tracedRequest.span;
+    boolean standalone = requestSpan == null;
+    long startNanos = tracedRequest.startNanos;
+    long startMicros = tracedRequest.startMicros;
+    long endMicros = 0;
+    if (standalone) {
+      // a single wall clock reading, the rest is derived from System.nanoTime()
+      long endNanos = System.nanoTime();
+      endMicros = nowMicros();
+      startNanos = endNanos - latencyNanos;
+      startMicros = endMicros - TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+      requestSpan = requestSpan(request, startMicros, tracedRequest.parent);
+      if (error != null) {
+        onError(requestSpan, error);
+      }
+    }
+
+    List<Attempt> attempts = tracedRequest.attempts();
+    for (int i = 0; i < attempts.size(); i++) {
+      attempts.get(i).report(requestSpan.context(), i, startNanos, startMicros);
+    }
+
+    if (standalone) {
+      requestSpan.finish(endMicros);
+    }
+  }
+
+  /*
+    The map only fills up with requests the driver never reported on, e.g. cancelled ones. They are
+    evicted one at a time, arbitrary ones, so the other requests in flight keep their attempt spans.
+   */
+  private void makeRoom() {
+    Iterator<TracedRequest> tracedRequests = requests.values().iterator();
+    while (requests.size() >= MAXIMUM_REQUESTS && tracedRequests.hasNext()) {
+      tracedRequests.next();
+      tracedRequests.remove();
+    }
+  }
+
+  /*
+    Requests first seen by the tracker are children of the span active on the reporting thread.
+   */
+  private TracedRequest standaloneRequest() {
+    Span activeSpan = tracer.activeSpan();
+    return new TracedRequest(null, activeSpan == null ? null : activeSpan.context(), 0, 0);
+  }
+
+  private Span requestSpan(Request request, long startMicros, SpanContext parent) {
+    SpanBuilder spanBuilder = tracer.buildSpan("execute")
+        .withStartTimestamp(startMicros)
+        .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+        .withTag(Tags.COMPONENT.getKey(), TracingCqlSession.COMPONENT_NAME)
+        .withTag(Tags.DB_TYPE.getKey(), "cassandra");
+    if (request instanceof SimpleStatement) {
+      spanBuilder.withTag(Tags.DB_STATEMENT.getKey(), ((SimpleStatement) request).getQuery());
+    } else if (request instanceof BoundStatement) {
+      spanBuilder.withTag(Tags.DB_STATEMENT.getKey(),
+          ((BoundStatement) request).getPreparedStatement().getQuery());
+    }
+    if (parent == null) {
+      spanBuilder.ignoreActiveSpan();
+    } else {
+      spanBuilder.asChildOf(parent);
+    }
+    return spanBuilder.start();
+  }
+
+  private void onError(Span span, Throwable error) {
+    Tags.ERROR.set(span, Boolean.TRUE);
+    Map<String, Object> errorLogs = new HashMap<>(4);
+    errorLogs.put("event", Tags.ERROR.getKey());
+    errorLogs.put("error.kind", error.getClass().getName());
+    errorLogs.put("error.object", error);
+    span.log(errorLogs);
+  }
+
+  private static long nowMicros() {
+    return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+  }
+
+  private class Attempt {
+
+    private final Node node;
+    private final long latencyNanos;
+    private final long endNanos;
+    private final Throwable error;
+
+    Attempt(Node node, long latencyNanos, long endNanos, Throwable error) {
+      this.node = node;
+      this.latencyNanos = latencyNanos;
+      this.endNanos = endNanos;
+      this.error = error;
+    }
+
+    /*
+      Never starts before the request, whose start is given on both clocks.
+     */
+    void report(SpanContext parent, int index, long requestStartNanos, long requestStartMicros) {
+      long startMicros = requestStartMicros + TimeUnit.NANOSECONDS
+          .toMicros(Math.max(0, endNanos - latencyNanos - requestStartNanos));
+      Span span = tracer.buildSpan(ATTEMPT_OPERATION_NAME)
+          .asChildOf(parent)
+          .withStartTimestamp(startMicros)
+          .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+          .withTag(Tags.COMPONENT.getKey(), TracingCqlSession.COMPONENT_NAME)
+          .withTag(Tags.DB_TYPE.getKey(), "cassandra")
+          .withTag(NODE, node.getEndPoint().toString())
+          .withTag(ATTEMPT, index)
+          .withTag(LATENCY_NANOS, latencyNanos)
+          .withTag(OUTCOME, error == null ? "success" : "error")
+          .start();
+      addPeerTags(span);
+      if (error != null) {
+        onError(span, error);
+      }
+      span.finish(startMicros + TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    private void addPeerTags(Span span) {
+      SocketAddress address = node.getEndPoint().resolve();
+      if (address instanceof InetSocketAddress) {
+        InetSocketAddress inetAddress = (InetSocketAddress) address;
+        Tags.PEER_HOSTNAME.set(span, inetAddress.getHostString());
+        Tags.PEER_PORT.set(span, inetAddress.getPort());
+        if (inetAddress.getAddress() instanceof Inet4Address) {
+          Tags.PEER_HOST_IPV4.set(span, inetAddress.getAddress().getHostAddress());
+        } else if (inetAddress.getAddress() != null) {
+          Tags.PEER_HOST_IPV6.set(span, inetAddress.getAddress().getHostAddress());
+        }
+      }
+      if (node.getDatacenter() != null) {
+        span.setTag(PEER_DATACENTER, node.getDatacenter());
+      }
+      if (node.getRack() != null) {
+        span.setTag(PEER_RACK, node.getRack());
+      }
+    }
+  }
+
+  private static class TracedRequest {
+
+    // null when the tracker creates the span of the request
+    private final Span span;
+    private final SpanContext parent;
+    // read right after the span of the decorator was started, on both clocks
+    private final long startNanos;
+    private final long startMicros;
+    private final List<Attempt> attempts = new ArrayList<>(1);
+
+    TracedRequest(Span span, SpanContext parent, long startNanos, long startMicros) {
+      this.span = span;
+      this.parent = parent;
+      this.startNanos = startNanos;
+      this.startMicros = startMicros;
+    }
+
+    synchronized void add(Attempt attempt) {
+      attempts.add(attempt);
+    }
+
+    synchronized List<Attempt> attempts() {
+      return new ArrayList<>(attempts);
+    }
+  }
+
+  /**
+   * Requests are compared by identity, statements have value semantics.
+   */
+  private static class RequestKey {
+
+    private final Request request;
+
+    RequestKey(Request request) {
+      this.request = request;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof RequestKey && ((RequestKey) o).request == request;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(request);
+    }
+  }
+}
@@ -14,28 +14,46 @@
 package io.opentracing.contrib.cassandra4;
 
 import static com.datastax.oss.driver.api.querybuilder.QueryBuilder.literal;
+import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import com.datastax.dse.driver.api.core.cql.reactive.ReactiveRow;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
 import com.datastax.oss.driver.api.querybuilder.QueryBuilder;
 import com.datastax.oss.driver.internal.core.metadata.DefaultEndPoint;
+import io.opentracing.contrib.cassandra.core.BatchSpanTags;
+import io.opentracing.contrib.cassandra.core.Histogram;
+import io.opentracing.contrib.cassandra.core.LatencyHistograms;
+import io.opentracing.contrib.cassandra.core.StatementTags;
+import io.opentracing.contrib.cassandra.nameprovider.NormalizedQuerySpanName;
+import io.opentracing.contrib.cassandra.nameprovider.QueryMethodTableSpanName;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
 import io.opentracing.tag.Tags;
 import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.cassandra.utils.UUIDGen;
 import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 public class Cassandra4Test {
   private static final MockTracer tracer = new MockTracer();
@@ -89,6 +107,315 @@ public class Cassandra4Test {
     assertNull(tracer.activeSpan());
   }
 
+  @Test
+  public void spanNames() {
+    CqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .build(), tracer, QueryMethodTableSpanName.newBuilder().build());
+    session.execute("SELECT release_version FROM system.local");
+    PreparedStatement prepared = session.prepare("SELECT * FROM system.peers");
+    session.execute(prepared.bind());
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(2, finished.size());
+    assertEquals("Cassandra.SELECT - system.local", finished.get(0).operationName());
+    assertEquals("Cassandra.SELECT - system.peers", finished.get(1).operationName());
+  }
+
+  @Test
+  public void statementFingerprints() {
+    CqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .build(), tracer, NormalizedQuerySpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withStatementFingerprints(true).build());
+    session.execute("SELECT * FROM system.local WHERE key = 'local'");
+    session.execute("SELECT * FROM system.local WHERE key='other'");
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(2, finished.size());
+    for (MockSpan span : finished) {
+      assertEquals("SELECT * FROM system.local WHERE key = ?", span.operationName());
+      assertEquals("SELECT * FROM system.local WHERE key = ?",
+          span.tags().get(Tags.DB_STATEMENT.getKey()));
+    }
+    assertEquals(finished.get(0).tags().get(StatementTags.STATEMENT_FINGERPRINT.getKey()),
+        finished.get(1).tags().get(StatementTags.STATEMENT_FINGERPRINT.getKey()));
+  }
+
+  @Test
+  public void statementDictionary() {
+    CqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .build(), tracer, TracingOptions.newBuilder()
+        .withMaxStatementLength(20)
+        .withStatementDictionary(1, TimeUnit.MINUTES)
+        .build());
+    PreparedStatement prepared = session.prepare("SELECT release_version FROM system.local");
+    session.execute(prepared.bind());
+    session.execute(prepared.bind());
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(2, finished.size());
+    assertEquals("SELECT re...em.local", finished.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+    assertNull(finished.get(1).tags().get(Tags.DB_STATEMENT.getKey()));
+    assertNotNull(finished.get(0).tags().get(StatementTags.STATEMENT_ID.getKey()));
+    assertEquals(finished.get(0).tags().get(StatementTags.STATEMENT_ID.getKey()),
+        finished.get(1).tags().get(StatementTags.STATEMENT_ID.getKey()));
+  }
+
+  @Test
+  public void notRecording() throws Exception {
+    CqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .build(), tracer, TracingOptions.newBuilder().withRecordingDetector(t -> false).build());
+    session.execute("SELECT release_version FROM system.local");
+    session.executeAsync("SELECT release_version FROM system.local").toCompletableFuture()
+        .get(15, TimeUnit.SECONDS);
+    session.close();
+
+    assertEquals(0, tracer.finishedSpans().size());
+  }
+
+  @Test
+  public void requestTracker() {
+    TracingRequestTracker requestTracker = new TracingRequestTracker(tracer);
+    CqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .withRequestTracker(requestTracker)
+        .build(), tracer, TracingOptions.newBuilder().withRequestTracker(requestTracker).build());
+    session.execute("SELECT release_version FROM system.local");
+
+    await().atMost(15, TimeUnit.SECONDS).until(() -> tracer.finishedSpans().size() == 2);
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    MockSpan attempt = finished.get(0).operationName().equals("execute")
+        ? finished.get(1) : finished.get(0);
+    MockSpan request = attempt == finished.get(0) ? finished.get(1) : finished.get(0);
+    assertEquals(TracingRequestTracker.ATTEMPT_OPERATION_NAME, attempt.operationName());
+    assertEquals(request.context().spanId(), attempt.parentId());
+    assertEquals(0, attempt.tags().get(TracingRequestTracker.ATTEMPT));
+    assertEquals("success", attempt.tags().get(TracingRequestTracker.OUTCOME));
+    assertNotNull(attempt.tags().get(TracingRequestTracker.LATENCY_NANOS));
+    assertEquals(9142, attempt.tags().get(Tags.PEER_PORT.getKey()));
+    assertTrue(attempt.startMicros() >= request.startMicros());
+  }
+
+  @Test
+  public void standaloneRequestTracker() {
+    CqlSession session = CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .withRequestTracker(new TracingRequestTracker(tracer))
+        .build();
+    tracer.reset();
+    session.execute("SELECT release_version FROM system.local");
+
+    await().atMost(15, TimeUnit.SECONDS).until(() -> tracer.finishedSpans().size() == 2);
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    MockSpan attempt = finished.get(0);
+    MockSpan request = finished.get(1);
+    assertEquals(TracingRequestTracker.ATTEMPT_OPERATION_NAME, attempt.operationName());
+    assertEquals("execute", request.operationName());
+    assertEquals(request.context().spanId(), attempt.parentId());
+    assertTrue(attempt.startMicros() >= request.startMicros());
+    assertTrue(attempt.finishMicros() - attempt.startMicros()
+        <= request.finishMicros() - request.startMicros());
+  }
+
+  @Test
+  public void pagingSpans() throws Exception {
+    CqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .build(), tracer, TracingOptions.newBuilder().withPagingSpans(true).build());
+    SimpleStatement statement = SimpleStatement
+        .newInstance("SELECT * FROM system_schema.columns").setPageSize(10);
+    AsyncResultSet page = session.executeAsync(statement).toCompletableFuture()
+        .get(15, TimeUnit.SECONDS);
+    int pages = 1;
+    long rows = page.remaining();
+    while (page.hasMorePages()) {
+      page = page.fetchNextPage().toCompletableFuture().get(15, TimeUnit.SECONDS);
+      pages++;
+      rows += page.remaining();
+    }
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(pages, finished.size());
+    MockSpan query = finished.get(0);
+    assertEquals("execute", query.operationName());
+    for (int i = 1; i < pages; i++) {
+      MockSpan pageSpan = finished.get(i);
+      assertEquals(TracingAsyncResultSet.FETCH_NEXT_PAGE_OPERATION_NAME,
+          pageSpan.operationName());
+      assertEquals(query.context().spanId(), pageSpan.parentId());
+      assertEquals(i, pageSpan.tags().get(TracingAsyncResultSet.PAGE));
+    }
+    MockSpan lastPage = finished.get(pages - 1);
+    assertEquals(pages, lastPage.tags().get(TracingAsyncResultSet.TOTAL_PAGES));
+    assertEquals(rows, lastPage.tags().get(TracingAsyncResultSet.TOTAL_ROWS));
+  }
+
+  @Test
+  public void batch() {
+    TracingCqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .build(), tracer, TracingOptions.newBuilder().withRequestSizes(true).build());
+    session.execute("CREATE KEYSPACE IF NOT EXISTS batches WITH replication = "
+        + "{'class':'SimpleStrategy', 'replication_factor' : 1}");
+    session.execute("CREATE TABLE IF NOT EXISTS batches.book (id uuid PRIMARY KEY, title text)");
+    PreparedStatement prepared = session
+        .prepare("INSERT INTO batches.book (id, title) VALUES (?, ?)");
+    tracer.reset();
+
+    session.execute(BatchStatement.newInstance(BatchType.UNLOGGED,
+        prepared.bind(UUIDGen.getTimeUUID(), "title1"),
+        prepared.bind(UUIDGen.getTimeUUID(), "title2")));
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(1, finished.size());
+    MockSpan span = finished.get(0);
+    assertEquals("UNLOGGED", span.tags().get(BatchSpanTags.BATCH_TYPE.getKey()));
+    assertEquals(2, span.tags().get(BatchSpanTags.BATCH_SIZE.getKey()));
+    assertEquals(1, span.tags().get(BatchSpanTags.BATCH_TABLES.getKey()));
+    assertEquals("batches.book", span.tags().get(BatchSpanTags.BATCH_TABLE_NAMES.getKey()));
+    int size = (Integer) span.tags().get(TracingCqlSession.REQUEST_SIZE.getKey());
+    assertTrue(size > 0);
+
+    Histogram sizes = session.getRequestSizes().asMap().get("BATCH UNLOGGED batches.book");
+    assertEquals(1, sizes.getCount());
+    assertTrue(sizes.getMax() >= size);
+  }
+
+  @Test
+  public void preparedStatementTags() {
+    CqlSession session = createSession();
+    session.execute("CREATE KEYSPACE IF NOT EXISTS prepared WITH replication = "
+        + "{'class':'SimpleStrategy', 'replication_factor' : 1}");
+    session.execute("CREATE TABLE IF NOT EXISTS prepared.book (id uuid PRIMARY KEY, title text)");
+    PreparedStatement insert = session
+        .prepare("INSERT INTO prepared.book (id, title) VALUES (?, ?)");
+    PreparedStatement select = session.prepare("SELECT * FROM prepared.book");
+    tracer.reset();
+
+    session.execute(insert.bind(UUIDGen.getTimeUUID(), "title"));
+    session.execute(select.bind());
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(2, finished.size());
+    for (MockSpan span : finished) {
+      assertEquals("prepared", span.tags().get(Tags.DB_INSTANCE.getKey()));
+      assertEquals("prepared.book",
+          span.tags().get(PreparedStatementTags.QUERY_TABLE.getKey()));
+    }
+    assertEquals("INSERT",
+        finished.get(0).tags().get(PreparedStatementTags.QUERY_KIND.getKey()));
+    assertEquals("SELECT",
+        finished.get(1).tags().get(PreparedStatementTags.QUERY_KIND.getKey()));
+  }
+
+  @Test
+  public void metricsOnly() throws Exception {
+    TracingCqlSession session = new TracingCqlSession(CqlSession.builder()
+        .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
+        .withLocalDatacenter("datacenter1")
+        .build(), tracer, QueryMethodTableSpanName.newBuilder().build(),
+        TracingOptions.newBuilder().withMetricsOnly(true).build());
+    session.execute("CREATE KEYSPACE IF NOT EXISTS latencies WITH replication = "
+        + "{'class':'SimpleStrategy', 'replication_factor' : 1}");
+    session.execute("CREATE TABLE IF NOT EXISTS latencies.book (id uuid PRIMARY KEY, title text)");
+    PreparedStatement insert = session
+        .prepare("INSERT INTO latencies.book (id, title) VALUES (?, ?)");
+    session.execute(insert.bind(UUIDGen.getTimeUUID(), "title1"));
+    session.executeAsync(insert.bind(UUIDGen.getTimeUUID(), "title2")).toCompletableFuture()
+        .get(15, TimeUnit.SECONDS);
+    session.close();
+
+    assertEquals(0, tracer.finishedSpans().size());
+    Map<LatencyHistograms.Key, Histogram> latencies = session.getLatencyHistograms().asMap();
+    Histogram histogram = latencies.get(new LatencyHistograms.Key(
+        "Cassandra.INSERT - latencies.book", "latencies.book", "127.0.0.1:9142"));
+    assertNotNull(histogram);
+    await().atMost(15, TimeUnit.SECONDS).until(() -> histogram.getCount() == 2);
+  }
+
+  @Test
+  public void genericExecute() throws Exception {
+    CqlSession session = createSession();
+    SimpleStatement statement = SimpleStatement
+        .newInstance("SELECT release_version FROM system.local");
+    session.execute(statement, Statement.SYNC);
+    session.execute(statement, Statement.ASYNC).toCompletableFuture().get(15, TimeUnit.SECONDS);
+    session.close();
+
+    // routed to execute and executeAsync, traced once
+    await().atMost(15, TimeUnit.SECONDS).until(() -> tracer.finishedSpans().size() == 2);
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(2, finished.size());
+    checkSpans(finished);
+  }
+
+  @Test
+  public void reactive() throws Exception {
+    CqlSession session = createSession();
+    SimpleStatement statement = SimpleStatement
+        .newInstance("SELECT * FROM system_schema.columns").setPageSize(10);
+    CountDownLatch completed = new CountDownLatch(1);
+    AtomicLong rows = new AtomicLong();
+    session.executeReactive(statement).subscribe(new Subscriber<ReactiveRow>() {
+      private Subscription subscription;
+
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(ReactiveRow row) {
+        rows.incrementAndGet();
+        subscription.request(1);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        completed.countDown();
+      }
+
+      @Override
+      public void onComplete() {
+        completed.countDown();
+      }
+    });
+    assertTrue(completed.await(15, TimeUnit.SECONDS));
+    session.close();
+
+    List<MockSpan> finished = tracer.finishedSpans();
+    assertEquals(1, finished.size());
+    MockSpan span = finished.get(0);
+    assertEquals("execute", span.operationName());
+    assertEquals(rows.get(), span.tags().get(TracingReactiveResultSet.ROWS));
+    assertTrue((Integer) span.tags().get(TracingReactiveResultSet.PAGES) > 1);
+    assertNotNull(span.tags().get(TracingReactiveResultSet.WAIT_NANOS));
+    assertNotNull(span.tags().get(TracingReactiveResultSet.BACKPRESSURE_NANOS));
+    assertNull(span.tags().get(Tags.ERROR.getKey()));
+  }
+
   private CqlSession createSession() {
     return new TracingCqlSession(CqlSession.builder()
         .addContactEndPoint(new DefaultEndPoint(new InetSocketAddress("127.0.0.1", 9142)))
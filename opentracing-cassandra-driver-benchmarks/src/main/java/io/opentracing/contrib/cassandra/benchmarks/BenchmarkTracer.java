@@ -0,0 +1,246 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.benchmarks;
+
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.tag.Tag;
+import io.opentracing.util.ThreadLocalScopeManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracer that records tags and logs like a real tracer would, but drops spans on finish instead of
+ * reporting them. Unlike MockTracer it does not retain finished spans, so it can run for the length
+ * of a benchmark without growing the heap.
+ */
+class BenchmarkTracer implements Tracer {
+
+  private static final SpanContext CONTEXT = new SpanContext() {
+    @Override
+    public String toTraceId() {
+      return "1";
+    }
+
+    @Override
+    public String toSpanId() {
+      return "1";
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, String>> baggageItems() {
+      return Collections.emptyList();
+    }
+  };
+
+  private final ScopeManager scopeManager = new ThreadLocalScopeManager();
+
+  @Override
+  public ScopeManager scopeManager() {
+    return scopeManager;
+  }
+
+  @Override
+  public Span activeSpan() {
+    return scopeManager.activeSpan();
+  }
+
+  @Override
+  public Scope activateSpan(Span span) {
+    return scopeManager.activate(span);
+  }
+
+  @Override
+  public SpanBuilder buildSpan(String operationName) {
+    return new BenchmarkSpanBuilder(operationName);
+  }
+
+  @Override
+  public <C> void inject(SpanContext spanContext, Format<C> format, C carrier) {
+  }
+
+  @Override
+  public <C> SpanContext extract(Format<C> format, C carrier) {
+    return null;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  private static class BenchmarkSpanBuilder implements SpanBuilder {
+
+    private final BenchmarkSpan span;
+
+    BenchmarkSpanBuilder(String operationName) {
+      this.span = new BenchmarkSpan(operationName);
+    }
+
+    @Override
+    public SpanBuilder asChildOf(SpanContext parent) {
+      return this;
+    }
+
+    @Override
+    public SpanBuilder asChildOf(Span parent) {
+      return this;
+    }
+
+    @Override
+    public SpanBuilder addReference(String referenceType, SpanContext referencedContext) {
+      return this;
+    }
+
+    @Override
+    public SpanBuilder ignoreActiveSpan() {
+      return this;
+    }
+
+    @Override
+    public SpanBuilder withTag(String key, String value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public SpanBuilder withTag(String key, boolean value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public SpanBuilder withTag(String key, Number value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public <T> SpanBuilder withTag(Tag<T> tag, T value) {
+      span.setTag(tag, value);
+      return this;
+    }
+
+    @Override
+    public SpanBuilder withStartTimestamp(long microseconds) {
+      span.startMicros = microseconds;
+      return this;
+    }
+
+    @Override
+    public Span start() {
+      if (span.startMicros == 0) {
+        span.startMicros = System.nanoTime() / 1000;
+      }
+      return span;
+    }
+  }
+
+  private static class BenchmarkSpan implements Span {
+
+    private final Map<String, Object> tags = new HashMap<>();
+    private final List<Map<String, ?>> logs = new ArrayList<>(1);
+    private String operationName;
+    private long startMicros;
+    private long finishMicros;
+
+    BenchmarkSpan(String operationName) {
+      this.operationName = operationName;
+    }
+
+    @Override
+    public SpanContext context() {
+      return CONTEXT;
+    }
+
+    @Override
+    public Span setTag(String key, String value) {
+      tags.put(key, value);
+      return this;
+    }
+
+    @Override
+    public Span setTag(String key, boolean value) {
+      tags.put(key, value);
+      return this;
+    }
+
+    @Override
+    public Span setTag(String key, Number value) {
+      tags.put(key, value);
+      return this;
+    }
+
+    @Override
+    public <T> Span setTag(Tag<T> tag, T value) {
+      tags.put(tag.getKey(), value);
+      return this;
+    }
+
+    @Override
+    public Span log(Map<String, ?> fields) {
+      logs.add(fields);
+      return this;
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, Map<String, ?> fields) {
+      logs.add(fields);
+      return this;
+    }
+
+    @Override
+    public Span log(String event) {
+      logs.add(Collections.singletonMap("event", event));
+      return this;
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, String event) {
+      return log(event);
+    }
+
+    @Override
+    public Span setBaggageItem(String key, String value) {
+      return this;
+    }
+
+    @Override
+    public String getBaggageItem(String key) {
+      return null;
+    }
+
+    @Override
+    public Span setOperationName(String operationName) {
+      this.operationName = operationName;
+      return this;
+    }
+
+    @Override
+    public void finish() {
+      finish(System.nanoTime() / 1000);
+    }
+
+    @Override
+    public void finish(long finishMicros) {
+      this.finishMicros = finishMicros;
+    }
+  }
+}
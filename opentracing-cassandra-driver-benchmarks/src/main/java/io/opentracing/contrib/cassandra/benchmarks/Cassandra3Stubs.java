@@ -0,0 +1,301 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.benchmarks;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.datastax.driver.core.CloseFuture;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.EndPoint;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.QueryOptions;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stubbed driver 3 objects, so that benchmarks run without a Cassandra server. The session and
+ * result set called on every query are plain classes, as mock invocations allocate and would add
+ * to the allocation rate of the benchmarks. The driver gives {@link ExecutionInfo} and {@link Host}
+ * no public constructor, they are stub-only mocks, like the cluster only read on setup.
+ */
+final class Cassandra3Stubs {
+
+  final Session session;
+  final ResultSet resultSet;
+  final Host host;
+
+  Cassandra3Stubs() {
+    InetSocketAddress socketAddress;
+    try {
+      // hostname is given, so reading it never triggers a reverse lookup
+      socketAddress = new InetSocketAddress(
+          InetAddress.getByAddress("cassandra-1", new byte[]{127, 0, 0, 1}), 9042);
+    } catch (UnknownHostException e) {
+      throw new IllegalStateException(e);
+    }
+
+    EndPoint endPoint = stub(EndPoint.class);
+    when(endPoint.resolve()).thenReturn(socketAddress);
+
+    host = stub(Host.class);
+    when(host.getEndPoint()).thenReturn(endPoint);
+    when(host.getSocketAddress()).thenReturn(socketAddress);
+    when(host.getAddress()).thenReturn(socketAddress.getAddress());
+    when(host.getDatacenter()).thenReturn("datacenter1");
+    when(host.getRack()).thenReturn("rack1");
+
+    ExecutionInfo executionInfo = stub(ExecutionInfo.class);
+    when(executionInfo.getQueriedHost()).thenReturn(host);
+    when(executionInfo.getTriedHosts()).thenReturn(Collections.singletonList(host));
+
+    resultSet = new StubResultSet(executionInfo);
+
+    Configuration configuration = stub(Configuration.class);
+    when(configuration.getQueryOptions()).thenReturn(new QueryOptions());
+
+    Cluster cluster = stub(Cluster.class);
+    when(cluster.getConfiguration()).thenReturn(configuration);
+
+    session = new StubSession(cluster, resultSet);
+  }
+
+  private static <T> T stub(Class<T> type) {
+    return mock(type, withSettings().stubOnly());
+  }
+
+  /*
+    Executes every query with the same result set, through a future completed once. Methods the
+    benchmarks do not call are not supported.
+   */
+  private static class StubSession implements Session {
+
+    private final Cluster cluster;
+    private final ResultSet resultSet;
+    private final ResultSetFuture future;
+
+    StubSession(Cluster cluster, ResultSet resultSet) {
+      this.cluster = cluster;
+      this.resultSet = resultSet;
+      this.future = new CompletedResultSetFuture(resultSet);
+    }
+
+    @Override
+    public String getLoggedKeyspace() {
+      return null;
+    }
+
+    @Override
+    public Session init() {
+      return this;
+    }
+
+    @Override
+    public ListenableFuture<Session> initAsync() {
+      return Futures.<Session>immediateFuture(this);
+    }
+
+    @Override
+    public ResultSet execute(String query) {
+      return resultSet;
+    }
+
+    @Override
+    public ResultSet execute(String query, Object... values) {
+      return resultSet;
+    }
+
+    @Override
+    public ResultSet execute(String query, Map<String, Object> values) {
+      return resultSet;
+    }
+
+    @Override
+    public ResultSet execute(Statement statement) {
+      return resultSet;
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(String query) {
+      return future;
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(String query, Object... values) {
+      return future;
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(String query, Map<String, Object> values) {
+      return future;
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(Statement statement) {
+      return future;
+    }
+
+    @Override
+    public PreparedStatement prepare(String query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PreparedStatement prepare(RegularStatement statement) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ListenableFuture<PreparedStatement> prepareAsync(String query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ListenableFuture<PreparedStatement> prepareAsync(RegularStatement statement) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CloseFuture closeAsync() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isClosed() {
+      return false;
+    }
+
+    @Override
+    public Cluster getCluster() {
+      return cluster;
+    }
+
+    @Override
+    public State getState() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /*
+    Single, fully fetched and empty page.
+   */
+  private static class StubResultSet implements ResultSet {
+
+    private final ExecutionInfo executionInfo;
+
+    StubResultSet(ExecutionInfo executionInfo) {
+      this.executionInfo = executionInfo;
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean wasApplied() {
+      return true;
+    }
+
+    @Override
+    public boolean isExhausted() {
+      return true;
+    }
+
+    @Override
+    public boolean isFullyFetched() {
+      return true;
+    }
+
+    @Override
+    public int getAvailableWithoutFetching() {
+      return 0;
+    }
+
+    @Override
+    public ListenableFuture<ResultSet> fetchMoreResults() {
+      return Futures.<ResultSet>immediateFuture(this);
+    }
+
+    @Override
+    public Row one() {
+      return null;
+    }
+
+    @Override
+    public List<Row> all() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+      return Collections.emptyIterator();
+    }
+
+    @Override
+    public ExecutionInfo getExecutionInfo() {
+      return executionInfo;
+    }
+
+    @Override
+    public List<ExecutionInfo> getAllExecutionInfo() {
+      return Collections.singletonList(executionInfo);
+    }
+  }
+
+  private static class CompletedResultSetFuture extends AbstractFuture<ResultSet>
+      implements ResultSetFuture {
+
+    private final ResultSet resultSet;
+
+    CompletedResultSetFuture(ResultSet resultSet) {
+      this.resultSet = resultSet;
+      set(resultSet);
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+      return resultSet;
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+      return resultSet;
+    }
+  }
+}
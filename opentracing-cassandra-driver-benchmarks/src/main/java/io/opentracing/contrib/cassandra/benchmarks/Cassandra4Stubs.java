@@ -0,0 +1,386 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.benchmarks;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metrics.Metrics;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.type.reflect.GenericType;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Stubbed driver 4 objects, so that benchmarks run without a Cassandra server. The sessions, result
+ * sets and prepared statement called on every query are plain classes, as mock invocations allocate
+ * and would add to the allocation rate of the benchmarks. {@link BoundStatement}, with well over a
+ * hundred methods, is a stub-only mock whose only call per query is its prepared statement.
+ */
+final class Cassandra4Stubs {
+
+  final CqlSession session;
+  final CqlSession pagedSession;
+  final ResultSet resultSet;
+  final AsyncResultSet asyncResultSet;
+  final AsyncResultSet firstPage;
+  final PreparedStatement preparedStatement;
+  final BoundStatement boundStatement;
+
+  Cassandra4Stubs(String query) {
+    resultSet = new StubResultSet();
+    asyncResultSet = new StubAsyncResultSet(100, null);
+    // two pages of 100 rows
+    firstPage = new StubAsyncResultSet(100, asyncResultSet);
+
+    // read once per statement, the tags of prepared statements are cached
+    ColumnDefinitions noColumns = stub(ColumnDefinitions.class);
+    preparedStatement = new StubPreparedStatement(query, noColumns);
+    boundStatement = stub(BoundStatement.class);
+    when(boundStatement.getPreparedStatement()).thenReturn(preparedStatement);
+
+    session = new StubSession(resultSet, asyncResultSet);
+    pagedSession = new StubSession(resultSet, firstPage);
+  }
+
+  private static <T> T stub(Class<T> type) {
+    return mock(type, withSettings().stubOnly());
+  }
+
+  /*
+    Executes every query with the same result sets, completed on the calling thread. Methods the
+    benchmarks do not call are not supported.
+   */
+  private static class StubSession implements CqlSession {
+
+    private final ResultSet resultSet;
+    private final CompletionStage<AsyncResultSet> asyncResultSet;
+
+    StubSession(ResultSet resultSet, AsyncResultSet asyncResultSet) {
+      this.resultSet = resultSet;
+      this.asyncResultSet = CompletableFuture.completedFuture(asyncResultSet);
+    }
+
+    @Override
+    @NonNull
+    public ResultSet execute(@NonNull Statement<?> statement) {
+      return resultSet;
+    }
+
+    @Override
+    @NonNull
+    public ResultSet execute(@NonNull String query) {
+      return resultSet;
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<AsyncResultSet> executeAsync(@NonNull Statement<?> statement) {
+      return asyncResultSet;
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<AsyncResultSet> executeAsync(@NonNull String query) {
+      return asyncResultSet;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+      return "s0";
+    }
+
+    @Override
+    @NonNull
+    public Metadata getMetadata() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isSchemaMetadataEnabled() {
+      return false;
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<Metadata> setSchemaMetadataEnabled(@Nullable Boolean newValue) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<Metadata> refreshSchemaAsync() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @NonNull
+    public Metadata refreshSchema() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<Boolean> checkSchemaAgreementAsync() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean checkSchemaAgreement() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @NonNull
+    public DriverContext getContext() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @NonNull
+    public Optional<CqlIdentifier> getKeyspace() {
+      return Optional.empty();
+    }
+
+    @Override
+    @NonNull
+    public Optional<Metrics> getMetrics() {
+      return Optional.empty();
+    }
+
+    @Override
+    @Nullable
+    public <RequestT extends Request, ResultT> ResultT execute(
+        @NonNull RequestT request,
+        @NonNull GenericType<ResultT> resultType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<Void> closeFuture() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isClosed() {
+      return false;
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<Void> closeAsync() {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    @NonNull
+    public CompletionStage<Void> forceCloseAsync() {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /*
+    Single, fully fetched and empty page.
+   */
+  private static class StubResultSet implements ResultSet {
+
+    @NonNull
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+      throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    @Override
+    public List<ExecutionInfo> getExecutionInfos() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isFullyFetched() {
+      return true;
+    }
+
+    @Override
+    public int getAvailableWithoutFetching() {
+      return 0;
+    }
+
+    @Override
+    public boolean wasApplied() {
+      return true;
+    }
+
+    @NonNull
+    @Override
+    public Iterator<Row> iterator() {
+      return Collections.emptyIterator();
+    }
+  }
+
+  /*
+    Page that claims a number of remaining rows without holding any, followed by the next page if
+    there is one.
+   */
+  private static class StubAsyncResultSet implements AsyncResultSet {
+
+    private final int remaining;
+    @Nullable
+    private final CompletionStage<AsyncResultSet> nextPage;
+
+    StubAsyncResultSet(int remaining, @Nullable AsyncResultSet nextPage) {
+      this.remaining = remaining;
+      this.nextPage = nextPage == null ? null : CompletableFuture.completedFuture(nextPage);
+    }
+
+    @NonNull
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+      throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    @Override
+    public ExecutionInfo getExecutionInfo() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int remaining() {
+      return remaining;
+    }
+
+    @NonNull
+    @Override
+    public Iterable<Row> currentPage() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean hasMorePages() {
+      return nextPage != null;
+    }
+
+    @NonNull
+    @Override
+    public CompletionStage<AsyncResultSet> fetchNextPage() throws IllegalStateException {
+      if (nextPage == null) {
+        throw new IllegalStateException("No next page");
+      }
+      return nextPage;
+    }
+
+    @Override
+    public boolean wasApplied() {
+      return true;
+    }
+  }
+
+  /*
+    Prepared statement without variables nor result columns. Binding is not supported, the bound
+    statement is stubbed.
+   */
+  private static class StubPreparedStatement implements PreparedStatement {
+
+    private final String query;
+    private final ColumnDefinitions noColumns;
+    private final ByteBuffer id = ByteBuffer.wrap(new byte[]{1, 2, 3, 4});
+
+    StubPreparedStatement(String query, ColumnDefinitions noColumns) {
+      this.query = query;
+      this.noColumns = noColumns;
+    }
+
+    @NonNull
+    @Override
+    public ByteBuffer getId() {
+      return id;
+    }
+
+    @NonNull
+    @Override
+    public String getQuery() {
+      return query;
+    }
+
+    @NonNull
+    @Override
+    public ColumnDefinitions getVariableDefinitions() {
+      return noColumns;
+    }
+
+    @NonNull
+    @Override
+    public List<Integer> getPartitionKeyIndices() {
+      return Collections.emptyList();
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getResultMetadataId() {
+      return null;
+    }
+
+    @NonNull
+    @Override
+    public ColumnDefinitions getResultSetDefinitions() {
+      return noColumns;
+    }
+
+    @Override
+    public void setResultMetadata(@NonNull ByteBuffer newResultMetadataId,
+        @NonNull ColumnDefinitions newResultSetDefinitions) {
+      throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    @Override
+    public BoundStatement bind(@NonNull Object... values) {
+      throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    @Override
+    public BoundStatementBuilder boundStatementBuilder(@NonNull Object... values) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.benchmarks;
+
+import io.opentracing.contrib.cassandra.nameprovider.CachingQuerySpanNameProvider;
+import io.opentracing.contrib.cassandra.nameprovider.CustomStringSpanName;
+import io.opentracing.contrib.cassandra.nameprovider.FullQuerySpanName;
+import io.opentracing.contrib.cassandra.nameprovider.PrefixedFullQuerySpanName;
+import io.opentracing.contrib.cassandra.nameprovider.QueryMethodTableSpanName;
+import io.opentracing.contrib.cassandra.nameprovider.QuerySpanNameProvider;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the built-in span name providers for a short query and for a multi-KB batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuerySpanNameProviderBenchmark {
+
+  @Param({"CustomString", "FullQuery", "PrefixedFullQuery", "QueryMethodTable",
+      "CachingQueryMethodTable"})
+  public String provider;
+
+  @Param({"select", "batch"})
+  public String query;
+
+  private QuerySpanNameProvider querySpanNameProvider;
+  private String queryString;
+
+  @Setup
+  public void setup() {
+    switch (provider) {
+      case "CustomString":
+        querySpanNameProvider = CustomStringSpanName.newBuilder().build();
+        break;
+      case "FullQuery":
+        querySpanNameProvider = FullQuerySpanName.newBuilder().build();
+        break;
+      case "PrefixedFullQuery":
+        querySpanNameProvider = PrefixedFullQuerySpanName.newBuilder().build();
+        break;
+      case "QueryMethodTable":
+        querySpanNameProvider = QueryMethodTableSpanName.newBuilder().build();
+        break;
+      case "CachingQueryMethodTable":
+        querySpanNameProvider = CachingQuerySpanNameProvider
+            .wrap(QueryMethodTableSpanName.newBuilder().build());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown provider: " + provider);
+    }
+
+    if ("batch".equals(query)) {
+      StringBuilder batch = new StringBuilder("BEGIN UNLOGGED BATCH\n");
+      for (int i = 0; i < 50; i++) {
+        batch.append("  INSERT INTO test.book (id, title, author) VALUES (")
+            .append(i).append(", 'title ").append(i).append("', 'author ").append(i)
+            .append("');\n");
+      }
+      queryString = batch.append("APPLY BATCH;").toString();
+    } else {
+      queryString = TracingSessionBenchmark.QUERY;
+    }
+  }
+
+  @Benchmark
+  public String querySpanName() {
+    return querySpanNameProvider.querySpanName(queryString);
+  }
+}
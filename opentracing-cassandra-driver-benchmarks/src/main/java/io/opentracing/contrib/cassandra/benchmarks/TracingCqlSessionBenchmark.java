@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.benchmarks;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import io.opentracing.contrib.cassandra4.TracingCqlSession;
+import io.opentracing.contrib.cassandra4.TracingOptions;
+import io.opentracing.noop.NoopTracerFactory;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-query overhead of {@link TracingCqlSession} (driver 4). The {@code raw*} benchmarks execute
+ * against the stubbed session directly and are the baseline for the traced ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingCqlSessionBenchmark {
+
+  static final String QUERY = "SELECT * FROM test.book WHERE id = ?";
+
+  private Cassandra4Stubs stubs;
+  private TracingCqlSession tracingSession;
+  private TracingCqlSession noopTracingSession;
+  private TracingCqlSession pagingTracingSession;
+  private SimpleStatement statement;
+
+  @Setup
+  public void setup() {
+    stubs = new Cassandra4Stubs(QUERY);
+    tracingSession = new TracingCqlSession(stubs.session, new BenchmarkTracer());
+    noopTracingSession = new TracingCqlSession(stubs.session, NoopTracerFactory.create());
+    pagingTracingSession = new TracingCqlSession(stubs.pagedSession, new BenchmarkTracer(),
+        TracingOptions.newBuilder().withPagingSpans(true).build());
+    statement = SimpleStatement.newInstance(QUERY);
+  }
+
+  @Benchmark
+  public ResultSet rawExecute() {
+    return stubs.session.execute(statement);
+  }
+
+  @Benchmark
+  public ResultSet execute() {
+    return tracingSession.execute(statement);
+  }
+
+  @Benchmark
+  public ResultSet executeNoopTracer() {
+    return noopTracingSession.execute(statement);
+  }
+
+  @Benchmark
+  public ResultSet executeBound() {
+    return tracingSession.execute(stubs.boundStatement);
+  }
+
+  @Benchmark
+  public ResultSet executeString() {
+    return tracingSession.execute(QUERY);
+  }
+
+  @Benchmark
+  public CompletionStage<AsyncResultSet> rawExecuteAsync() {
+    return stubs.session.executeAsync(statement);
+  }
+
+  @Benchmark
+  public CompletionStage<AsyncResultSet> executeAsync() {
+    return tracingSession.executeAsync(statement);
+  }
+
+  @Benchmark
+  public CompletionStage<AsyncResultSet> rawExecuteAsyncAndFetchNextPage() {
+    return stubs.pagedSession.executeAsync(statement).thenCompose(AsyncResultSet::fetchNextPage);
+  }
+
+  @Benchmark
+  public CompletionStage<AsyncResultSet> executeAsyncAndFetchNextPage() {
+    return pagingTracingSession.executeAsync(statement)
+        .thenCompose(AsyncResultSet::fetchNextPage);
+  }
+
+  @Benchmark
+  public CompletionStage<AsyncResultSet> executeAsyncBound() {
+    return tracingSession.executeAsync(stubs.boundStatement);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017-2020 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.cassandra.benchmarks;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.cassandra.CompletionExecutor;
+import io.opentracing.contrib.cassandra.CompletionMode;
+import io.opentracing.contrib.cassandra.TracingOptions;
+import io.opentracing.contrib.cassandra.TracingSession;
+import io.opentracing.contrib.cassandra.nameprovider.QueryMethodTableSpanName;
+import io.opentracing.noop.NoopTracerFactory;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-query overhead of {@link TracingSession} (driver 3). The {@code raw*} benchmarks execute
+ * against the stubbed session directly and are the baseline for the traced ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingSessionBenchmark {
+
+  static final String QUERY = "SELECT * FROM test.book WHERE id = ?";
+
+  private Cassandra3Stubs stubs;
+  private Tracer tracer;
+  private ExecutorService executorService;
+  private TracingSession tracingSession;
+  private TracingSession directTracingSession;
+  private TracingSession noopTracingSession;
+  private Statement statement;
+  private Exception exception;
+
+  @Setup
+  public void setup() {
+    stubs = new Cassandra3Stubs();
+    tracer = new BenchmarkTracer();
+    executorService = CompletionExecutor.newBuilder().build();
+    tracingSession = new TracingSession(stubs.session, tracer,
+        QueryMethodTableSpanName.newBuilder().build(), executorService);
+    directTracingSession = new TracingSession(stubs.session, tracer,
+        QueryMethodTableSpanName.newBuilder().build(), executorService,
+        TracingOptions.newBuilder().withCompletionMode(CompletionMode.DIRECT).build());
+    noopTracingSession = new TracingSession(stubs.session, NoopTracerFactory.create(),
+        QueryMethodTableSpanName.newBuilder().build(), executorService);
+    statement = new SimpleStatement(QUERY);
+    exception = new InvalidQueryException("unconfigured table book");
+  }
+
+  @TearDown
+  public void tearDown() {
+    executorService.shutdown();
+  }
+
+  @Benchmark
+  public ResultSet rawExecute() {
+    return stubs.session.execute(statement);
+  }
+
+  @Benchmark
+  public ResultSet execute() {
+    return tracingSession.execute(statement);
+  }
+
+  @Benchmark
+  public ResultSet executeNoopTracer() {
+    return noopTracingSession.execute(statement);
+  }
+
+  @Benchmark
+  public ResultSet executeString() {
+    return tracingSession.execute(QUERY);
+  }
+
+  @Benchmark
+  public ResultSetFuture rawExecuteAsync() {
+    return stubs.session.executeAsync(statement);
+  }
+
+  @Benchmark
+  public ResultSetFuture executeAsync() {
+    return tracingSession.executeAsync(statement);
+  }
+
+  @Benchmark
+  public ResultSetFuture executeAsyncDirectCompletion() {
+    return directTracingSession.executeAsync(statement);
+  }
+
+  @Benchmark
+  public Span buildSpan() {
+    Span span = tracingSession.buildSpan(QUERY);
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public Span finishSpan() {
+    Span span = tracer.buildSpan("execute").start();
+    tracingSession.finishSpan(span, stubs.resultSet);
+    return span;
+  }
+
+  @Benchmark
+  public Span finishSpanWithStatement() {
+    Span span = tracer.buildSpan("execute").start();
+    tracingSession.finishSpan(span, stubs.resultSet, statement);
+    return span;
+  }
+
+  @Benchmark
+  public Span finishSpanWithError() {
+    Span span = tracer.buildSpan("execute").start();
+    tracingSession.finishSpan(span, exception);
+    return span;
+  }
+
+  @Benchmark
+  public Span finishSpanWithErrorAndStatement() {
+    Span span = tracer.buildSpan("execute").start();
+    tracingSession.finishSpan(span, exception, statement);
+    return span;
+  }
+
+  @Benchmark
+  public Map<String, Object> errorLogs() {
+    return tracingSession.errorLogs(exception);
+  }
+
+  @Benchmark
+  public Map<String, Object> errorLogsWithStatement() {
+    return tracingSession.errorLogs(exception, statement);
+  }
+}